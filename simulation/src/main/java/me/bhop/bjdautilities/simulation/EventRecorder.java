@@ -0,0 +1,117 @@
+package me.bhop.bjdautilities.simulation;
+
+import me.bhop.bjdautilities.util.ErrorReporter;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the guild messages and reactions a bot receives to an {@link EventRecording}, so its traffic can be
+ * replayed offline with an {@link EventReplayer}. Events caused by the bot itself are left out, since the library
+ * sends those on its own during a replay.
+ *
+ * Register it as a listener on each shard. Message contents are written as they are, so recordings of real guilds
+ * should be treated like the messages themselves. Nothing is written after the first failed write, the error is
+ * reported through the {@link ErrorReporter}.
+ *
+ * The compressed stream is flushed with the first event after each second, so if the bot crashes without closing
+ * the recorder, the file can still be read up to about the last second of events before the crash.
+ */
+public class EventRecorder extends ListenerAdapter implements Closeable {
+    private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final DataOutputStream out;
+    private long last = System.nanoTime();
+    private long flushed = last;
+    private boolean failed = false;
+
+    /**
+     * Start a recording in a file, replacing it if it exists.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public EventRecorder(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    /**
+     * Start a recording in a stream, which is closed along with the recorder.
+     *
+     * @param out the stream
+     * @throws IOException if the stream cannot be written
+     */
+    public EventRecorder(OutputStream out) throws IOException {
+        // Sync flushing makes everything written so far decompressible without the end of the stream.
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out, true)));
+        EventRecording.writeHeader(this.out, System.currentTimeMillis());
+        this.out.flush();
+    }
+
+    @Override
+    public void onMessageReceived(MessageReceivedEvent event) {
+        if (!event.isFromGuild() || event.getAuthor().getIdLong() == event.getJDA().getSelfUser().getIdLong())
+            return;
+        write(RecordedEvent.Type.MESSAGE, event.getGuild().getIdLong(), event.getChannel().getIdLong(),
+                event.getAuthor().getIdLong(), event.getMessageIdLong(), event.getMessage().getContentRaw());
+    }
+
+    @Override
+    public void onMessageReactionAdd(MessageReactionAddEvent event) {
+        reaction(RecordedEvent.Type.REACTION_ADD, event);
+    }
+
+    @Override
+    public void onMessageReactionRemove(MessageReactionRemoveEvent event) {
+        reaction(RecordedEvent.Type.REACTION_REMOVE, event);
+    }
+
+    private void reaction(RecordedEvent.Type type, GenericMessageReactionEvent event) {
+        if (!event.isFromGuild() || event.getUserIdLong() == event.getJDA().getSelfUser().getIdLong())
+            return;
+        MessageReaction.ReactionEmote emote = event.getReactionEmote();
+        write(type, event.getGuild().getIdLong(), event.getChannel().getIdLong(), event.getUserIdLong(),
+                event.getMessageIdLong(), emote.isEmote() ? emote.getEmote().getName() : emote.getName());
+    }
+
+    private synchronized void write(RecordedEvent.Type type, long guildId, long channelId, long userId, long messageId, String text) {
+        if (failed)
+            return;
+        long now = System.nanoTime();
+        try {
+            EventRecording.writeEvent(out, type, Math.max(0, now - last), guildId, channelId, userId, messageId, text);
+            last = now;
+            if (now - flushed >= FLUSH_INTERVAL) {
+                out.flush();
+                flushed = now;
+            }
+        } catch (IOException e) {
+            failed = true;
+            ErrorReporter.report("recorder", e);
+        }
+    }
+
+    /**
+     * Finish the recording and close the underlying stream.
+     *
+     * @throws IOException if the end of the recording cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        failed = true;
+        out.close();
+    }
+}
@@ -0,0 +1,166 @@
+package me.bhop.bjdautilities.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A sequence of gateway events written by an {@link EventRecorder}, which can be replayed with an
+ * {@link EventReplayer}.
+ *
+ * The file is gzip compressed. It starts with a magic number, a format version and the wall clock time the recording
+ * started at. Each event follows as its type, the nanoseconds since the previous event as a variable length number,
+ * the guild, channel, user and message ids, and the text as a variable length byte count followed by UTF-8.
+ *
+ * The recorder flushes the compressed stream periodically, so a recording cut short, e.g. by a crash, is read up to
+ * its last complete event.
+ */
+public final class EventRecording {
+    static final int MAGIC = 0x424A5245;
+    static final int VERSION = 1;
+
+    private final long startedAt;
+    private final List<RecordedEvent> events;
+
+    private EventRecording(long startedAt, List<RecordedEvent> events) {
+        this.startedAt = startedAt;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Read a recording from a file.
+     *
+     * @param file the file
+     * @return the recording
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static EventRecording read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Read a recording from a stream. The stream is not closed.
+     *
+     * @param in the stream
+     * @return the recording
+     * @throws IOException if the stream cannot be read or is not a recording
+     */
+    public static EventRecording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not an event recording!");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported event recording version " + version + "!");
+        long startedAt = data.readLong();
+
+        RecordedEvent.Type[] types = RecordedEvent.Type.values();
+        List<RecordedEvent> events = new ArrayList<>();
+        long time = 0;
+        while (true) {
+            RecordedEvent event;
+            try {
+                int type = data.read();
+                if (type == -1)
+                    break;
+                if (type >= types.length)
+                    throw new IOException("Unknown event type " + type + "!");
+                long sincePrevious = readVarLong(data);
+                event = new RecordedEvent(types[type], time + sincePrevious, data.readLong(), data.readLong(), data.readLong(), data.readLong(), readString(data));
+            } catch (EOFException e) {
+                // Cut short without the end of the gzip stream, keep the events which were flushed completely.
+                break;
+            }
+            time = event.getTime();
+            events.add(event);
+        }
+        return new EventRecording(startedAt, events);
+    }
+
+    /**
+     * Get the wall clock time the recording started at.
+     *
+     * @return the start in epoch milliseconds
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Get the recorded events, in the order they were received.
+     *
+     * @return the events
+     */
+    public List<RecordedEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * Get the time between the start of the recording and the last event.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDuration() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getTime();
+    }
+
+    static void writeHeader(DataOutput out, long startedAt) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(startedAt);
+    }
+
+    static void writeEvent(DataOutput out, RecordedEvent.Type type, long sincePrevious, long guildId, long channelId,
+                           long userId, long messageId, String text) throws IOException {
+        out.writeByte(type.ordinal());
+        writeVarLong(out, sincePrevious);
+        out.writeLong(guildId);
+        out.writeLong(channelId);
+        out.writeLong(userId);
+        out.writeLong(messageId);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length number!");
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE)
+            throw new IOException("Malformed text length " + length + "!");
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package me.bhop.bjdautilities.simulation;
+
+import me.bhop.bjdautilities.metrics.LatencyHistogram;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.requests.Route;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the events of an {@link EventRecording} to the listeners of a {@link SimulatedDiscord}, with the timing they
+ * were recorded with, and reports how long the listeners took to handle them.
+ *
+ * Every recorded guild, channel and user is given a simulated counterpart before the replay starts. Recorded
+ * messages are sent again as new simulated messages. A reaction to a message which is not part of the recording,
+ * such as a menu the bot displayed, goes to the last message the bot sent in the channel by the time of the first
+ * reaction to it, so menus created while replaying receive the clicks recorded on their originals.
+ */
+public class EventReplayer {
+    private static final int MESSAGES = 10000;
+
+    private final SimulatedDiscord discord;
+    private double speed = 1;
+    private long idleTimeout = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<Long, GuildImpl> guilds = new HashMap<>();
+    private final Map<Long, TextChannel> channels = new HashMap<>();
+    private final Map<Long, Map<Long, Member>> members = new HashMap<>();
+    private final Map<Long, Message> messages = new LinkedHashMap<Long, Message>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Message> eldest) {
+            return size() > MESSAGES;
+        }
+    };
+
+    /**
+     * @param discord the simulation to replay the events in
+     */
+    public EventReplayer(SimulatedDiscord discord) {
+        this.discord = discord;
+    }
+
+    /**
+     * Set how much faster than recorded the events are replayed, e.g. 1 for the original speed or 10 for ten times
+     * as fast. With a speed of 0, events are handed over as fast as the listeners accept them.
+     *
+     * @param speed the speed
+     * @return the replayer
+     */
+    public EventReplayer setSpeed(double speed) {
+        if (speed < 0)
+            throw new IllegalArgumentException("The speed cannot be negative!");
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Set how long to wait for the requests caused by the events to be answered, once every event was handed over.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @return the replayer
+     */
+    public EventReplayer setIdleTimeout(long timeout, TimeUnit unit) {
+        this.idleTimeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Create the simulated guilds, channels and members of a recording without replaying it, e.g. to set up
+     * commands or menus in its channels first. Entities which were already created are reused.
+     *
+     * @param recording the recording
+     */
+    public void prepare(EventRecording recording) {
+        for (RecordedEvent event : recording.getEvents()) {
+            GuildImpl guild = guilds.computeIfAbsent(event.getGuildId(), id -> discord.createGuild());
+            channels.computeIfAbsent(event.getChannelId(), id -> discord.createChannel(guild));
+            members.computeIfAbsent(event.getGuildId(), id -> new HashMap<>())
+                    .computeIfAbsent(event.getUserId(), id -> discord.createMember(guild));
+        }
+    }
+
+    /**
+     * Get the simulated counterpart of a recorded channel.
+     *
+     * @param recordedId the id of the channel in the recording
+     * @return the channel, or null if it has not been prepared
+     */
+    public TextChannel getChannel(long recordedId) {
+        return channels.get(recordedId);
+    }
+
+    /**
+     * Replay a recording and wait for the simulation to go idle.
+     *
+     * @param recording the recording
+     * @return the report
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ReplayReport replay(EventRecording recording) throws InterruptedException {
+        prepare(recording);
+        RequestLog log = discord.getRequests();
+        long requests = log.getCount();
+        long rateLimited = log.getRateLimited();
+        long delay = log.getTotalDelay();
+        Map<Route, Long> routes = log.getCounts();
+        LatencyHistogram dispatch = new LatencyHistogram();
+        LatencyHistogram lag = new LatencyHistogram();
+
+        int events = 0;
+        long start = System.nanoTime();
+        for (RecordedEvent recorded : recording.getEvents()) {
+            long due = speed == 0 ? System.nanoTime() : start + (long) (recorded.getTime() / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            GenericEvent event = create(recorded);
+            if (event == null)
+                continue;
+            long handed = System.nanoTime();
+            lag.record(handed - due);
+            discord.getJDA().handleEvent(event);
+            dispatch.record(System.nanoTime() - handed);
+            events++;
+        }
+        long dispatched = System.nanoTime() - start;
+        discord.awaitIdle(idleTimeout, TimeUnit.NANOSECONDS);
+        long total = System.nanoTime() - start;
+
+        LoadReport load = new LoadReport(events, dispatched, total, log.getCount() - requests, log.getRateLimited() - rateLimited,
+                log.getTotalDelay() - delay, log.getCountsSince(routes));
+        return new ReplayReport(load, recording.getEvents().size() - events, dispatch.snapshot(), lag.snapshot());
+    }
+
+    private GenericEvent create(RecordedEvent recorded) {
+        TextChannel channel = channels.get(recorded.getChannelId());
+        Member member = members.get(recorded.getGuildId()).get(recorded.getUserId());
+        switch (recorded.getType()) {
+            case MESSAGE:
+                MessageReceivedEvent event = discord.messageReceived(channel, member, recorded.getText());
+                messages.put(recorded.getMessageId(), event.getMessage());
+                return event;
+            case REACTION_ADD:
+                return discord.reactionAdded(resolve(recorded.getMessageId(), channel), member, recorded.getText());
+            case REACTION_REMOVE:
+                return discord.reactionRemoved(resolve(recorded.getMessageId(), channel), member, recorded.getText());
+            default:
+                return null;
+        }
+    }
+
+    private Message resolve(long recordedId, TextChannel channel) {
+        Message message = messages.get(recordedId);
+        if (message == null) {
+            message = discord.getLatestMessage(channel);
+            if (message == null)
+                message = discord.createMessage(channel, channel.getGuild().getSelfMember(), "");
+            messages.put(recordedId, message);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,88 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.internal.requests.Route;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Hands events to the listeners of a {@link SimulatedDiscord} at a steady rate, and reports how the library kept
+ * up and which REST requests it made.
+ */
+public class LoadDriver {
+    private final SimulatedDiscord discord;
+    private double rate = 0;
+    private long idleTimeout = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * @param discord the simulation to drive
+     */
+    public LoadDriver(SimulatedDiscord discord) {
+        this.discord = discord;
+    }
+
+    /**
+     * Set how many events are handed to the listeners per second. With a rate of 0, events are handed over as fast
+     * as the listeners accept them.
+     *
+     * @param perSecond the events per second
+     * @return the driver
+     */
+    public LoadDriver setRate(double perSecond) {
+        if (perSecond < 0)
+            throw new IllegalArgumentException("The rate cannot be negative!");
+        this.rate = perSecond;
+        return this;
+    }
+
+    /**
+     * Set how long to wait for the requests caused by the events to be answered, once every event was handed over.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @return the driver
+     */
+    public LoadDriver setIdleTimeout(long timeout, TimeUnit unit) {
+        this.idleTimeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Hand events to the listeners and wait for the simulation to go idle.
+     *
+     * Events are created right before they are handed over, so creating them counts towards the measured time
+     * but does not need to fit in memory all at once.
+     *
+     * @param events the number of events
+     * @param event creates the event with the given index
+     * @return the report
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public LoadReport run(int events, IntFunction<? extends GenericEvent> event) throws InterruptedException {
+        RequestLog log = discord.getRequests();
+        long requests = log.getCount();
+        long rateLimited = log.getRateLimited();
+        long delay = log.getTotalDelay();
+        Map<Route, Long> routes = log.getCounts();
+
+        long interval = rate == 0 ? 0 : (long) (1e9 / rate);
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            if (interval > 0) {
+                long wait = start + i * interval - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+            }
+            discord.getJDA().handleEvent(event.apply(i));
+        }
+        long dispatched = System.nanoTime() - start;
+        discord.awaitIdle(idleTimeout, TimeUnit.NANOSECONDS);
+        long total = System.nanoTime() - start;
+
+        return new LoadReport(events, dispatched, total, log.getCount() - requests, log.getRateLimited() - rateLimited,
+                log.getTotalDelay() - delay, log.getCountsSince(routes));
+    }
+}
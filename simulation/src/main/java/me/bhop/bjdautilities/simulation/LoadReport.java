@@ -0,0 +1,120 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.internal.requests.Route;
+
+import java.util.Map;
+
+/**
+ * The outcome of a {@link LoadDriver} run.
+ */
+public final class LoadReport {
+    private final int events;
+    private final long dispatchTime;
+    private final long totalTime;
+    private final long requests;
+    private final long rateLimited;
+    private final long delay;
+    private final Map<Route, Long> routes;
+
+    LoadReport(int events, long dispatchTime, long totalTime, long requests, long rateLimited, long delay, Map<Route, Long> routes) {
+        this.events = events;
+        this.dispatchTime = dispatchTime;
+        this.totalTime = totalTime;
+        this.requests = requests;
+        this.rateLimited = rateLimited;
+        this.delay = delay;
+        this.routes = routes;
+    }
+
+    /**
+     * Get the number of events handed to the listeners.
+     *
+     * @return the event count
+     */
+    public int getEvents() {
+        return events;
+    }
+
+    /**
+     * Get how long it took to hand every event to the listeners.
+     *
+     * @return the dispatch time in nanoseconds
+     */
+    public long getDispatchTime() {
+        return dispatchTime;
+    }
+
+    /**
+     * Get how long it took until every event was handled and every request it caused was answered.
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Get the number of events the listeners handled per second.
+     *
+     * @return the throughput
+     */
+    public double getThroughput() {
+        return dispatchTime == 0 ? 0 : events * 1e9 / dispatchTime;
+    }
+
+    /**
+     * Get the number of REST requests made during the run.
+     *
+     * @return the request count
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Get the average number of REST requests made per event.
+     *
+     * @return the REST amplification
+     */
+    public double getAmplification() {
+        return events == 0 ? 0 : (double) requests / events;
+    }
+
+    /**
+     * Get the number of requests which were held back by the simulated rate limits.
+     *
+     * @return the rate limited request count
+     */
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * Get how long requests were held back by the simulated rate limits in total.
+     *
+     * @return the total delay in nanoseconds
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Get the number of REST requests made per route during the run.
+     *
+     * @return the request counts
+     */
+    public Map<Route, Long> getRoutes() {
+        return routes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("events      %d in %.1f ms (%.0f/s), idle after %.1f ms%n",
+                events, dispatchTime / 1e6, getThroughput(), totalTime / 1e6));
+        report.append(String.format("requests    %d (%.2f per event), %d rate limited for %.1f ms in total%n",
+                requests, getAmplification(), rateLimited, delay / 1e6));
+        routes.forEach((route, count) -> report.append(String.format("  %-60s %d%n", route, count)));
+        return report.toString();
+    }
+}
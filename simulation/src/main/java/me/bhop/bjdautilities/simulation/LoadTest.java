@@ -0,0 +1,84 @@
+package me.bhop.bjdautilities.simulation;
+
+import me.bhop.bjdautilities.command.CommandHandler;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.menu.ReactionMenu;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A load test of a bot with a single command and a counter menu in every channel.
+ *
+ * Usage: {@code LoadTest [events] [events per second] [latency in ms]}, e.g. {@code gradle :simulation:loadTest -Pargs="100000 5000 50"}.
+ * Every tenth event is a click on a menu, the rest are messages of which half invoke the command.
+ */
+public class LoadTest {
+    private static final String EMOJI = "\u2795";
+
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        SimulatedDiscord discord = new SimulatedDiscord.Builder()
+                .setLatency(latency, TimeUnit.MILLISECONDS)
+                .build();
+        GuildImpl guild = discord.createGuild();
+        List<TextChannel> channels = new ArrayList<>();
+        List<Member> members = new ArrayList<>();
+        List<Message> menus = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            channels.add(discord.createChannel(guild));
+        for (int i = 0; i < 100; i++)
+            members.add(discord.createMember(guild));
+
+        new CommandHandler.Builder(discord.getJDA())
+                .guildIndependent()
+                .setPrefix("!")
+                .build()
+                .register(Ping.class);
+        for (TextChannel channel : channels) {
+            int[] clicks = {0};
+            ReactionMenu menu = new ReactionMenu.Builder(discord.getJDA())
+                    .setMessage("Clicks: 0")
+                    .addStartingReaction(EMOJI)
+                    .onClick(EMOJI, clicked -> clicked.getMessage().setContent("Clicks: " + ++clicks[0]))
+                    .buildAndDisplay(channel);
+            menus.add(menu.getMessage());
+        }
+        discord.awaitIdle(1, TimeUnit.MINUTES);
+        discord.getRequests().clear();
+
+        Random random = new Random(0);
+        LoadReport report = new LoadDriver(discord)
+                .setRate(rate)
+                .run(events, i -> {
+                    Member member = members.get(random.nextInt(members.size()));
+                    if (i % 10 == 9)
+                        return discord.reactionAdded(menus.get(random.nextInt(menus.size())), member, EMOJI);
+                    TextChannel channel = channels.get(random.nextInt(channels.size()));
+                    return discord.messageReceived(channel, member, random.nextBoolean() ? "!ping" : "just chatting");
+                });
+        System.out.print(report);
+        discord.shutdown();
+        System.exit(0);
+    }
+
+    @Command(label = "ping")
+    public static class Ping {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            channel.sendMessage("Pong!").queue();
+            return CommandResult.success();
+        }
+    }
+}
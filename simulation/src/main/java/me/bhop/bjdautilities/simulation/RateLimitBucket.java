@@ -0,0 +1,43 @@
+package me.bhop.bjdautilities.simulation;
+
+/**
+ * A fixed window rate limit, like the buckets Discord assigns to a route and its major parameters.
+ *
+ * Requests never fail, instead they are given the time they may be sent at. Once a window is full, requests are
+ * moved to the next window which still has room, the way JDA holds them back until the bucket resets.
+ */
+final class RateLimitBucket {
+    private final int limit;
+    private final long window;
+    private long windowEnd = Long.MIN_VALUE;
+    private int used = 0;
+
+    /**
+     * @param limit the requests allowed per window
+     * @param window the length of a window in nanoseconds
+     */
+    RateLimitBucket(int limit, long window) {
+        this.limit = limit;
+        this.window = window;
+    }
+
+    /**
+     * Reserve room for a request.
+     *
+     * @param now the current time in nanoseconds
+     * @return the time the request may be sent at, never before {@code now}
+     */
+    synchronized long reserve(long now) {
+        if (windowEnd == Long.MIN_VALUE || now - windowEnd >= 0) {
+            windowEnd = now + window;
+            used = 0;
+        }
+        if (used < limit) {
+            used++;
+            return Math.max(now, windowEnd - window);
+        }
+        windowEnd += window;
+        used = 1;
+        return windowEnd - window;
+    }
+}
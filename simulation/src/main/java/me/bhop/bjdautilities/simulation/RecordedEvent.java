@@ -0,0 +1,88 @@
+package me.bhop.bjdautilities.simulation;
+
+/**
+ * A gateway event as kept in an {@link EventRecording}. Only the fields the library looks at are kept.
+ */
+public final class RecordedEvent {
+    /**
+     * The kinds of events which are recorded.
+     */
+    public enum Type {
+        MESSAGE, REACTION_ADD, REACTION_REMOVE
+    }
+
+    private final Type type;
+    private final long time;
+    private final long guildId;
+    private final long channelId;
+    private final long userId;
+    private final long messageId;
+    private final String text;
+
+    /**
+     * @param type the kind of event
+     * @param time the time of the event in nanoseconds, counted from the start of the recording
+     * @param guildId the guild id
+     * @param channelId the channel id
+     * @param userId the id of the author or the reacting user
+     * @param messageId the message id
+     * @param text the content of a message, or the name of a reaction emoji
+     */
+    public RecordedEvent(Type type, long time, long guildId, long channelId, long userId, long messageId, String text) {
+        this.type = type;
+        this.time = time;
+        this.guildId = guildId;
+        this.channelId = channelId;
+        this.userId = userId;
+        this.messageId = messageId;
+        this.text = text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the time of this event, counted from the start of the recording.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * Get the id of the user who sent the message or changed the reaction.
+     *
+     * @return the user id
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Get the content of the message, or the name of the emoji for a reaction.
+     *
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3fs %s %d/%d by %d: %s", time / 1e9, type, channelId, messageId, userId, text);
+    }
+}
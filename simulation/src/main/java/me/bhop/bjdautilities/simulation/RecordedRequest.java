@@ -0,0 +1,81 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.internal.requests.Route;
+
+/**
+ * A REST request issued through a {@link SimulatedDiscord}.
+ */
+public final class RecordedRequest {
+    private final Route route;
+    private final String compiledRoute;
+    private final String bucket;
+    private final long issuedAt;
+    private final long delay;
+
+    RecordedRequest(Route route, String compiledRoute, String bucket, long issuedAt, long delay) {
+        this.route = route;
+        this.compiledRoute = compiledRoute;
+        this.bucket = bucket;
+        this.issuedAt = issuedAt;
+        this.delay = delay;
+    }
+
+    /**
+     * Get the route of this request, e.g. {@code POST channels/{channel_id}/messages}.
+     *
+     * @return the route
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Get the route of this request with its parameters filled in.
+     *
+     * @return the compiled route
+     */
+    public String getCompiledRoute() {
+        return compiledRoute;
+    }
+
+    /**
+     * Get the rate limit bucket this request was counted against.
+     *
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Get the time this request was issued at, as given by {@link System#nanoTime()}.
+     *
+     * @return the issue time in nanoseconds
+     */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * Get how long this request was held back by the simulated rate limits.
+     *
+     * @return the delay in nanoseconds
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Check whether this request was held back by the simulated rate limits.
+     *
+     * @return whether the request was rate limited
+     */
+    public boolean isRateLimited() {
+        return delay > 0;
+    }
+
+    @Override
+    public String toString() {
+        return route.getMethod() + " " + compiledRoute + (delay > 0 ? " (delayed " + delay / 1_000_000 + "ms)" : "");
+    }
+}
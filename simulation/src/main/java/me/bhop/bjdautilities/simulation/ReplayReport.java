@@ -0,0 +1,77 @@
+package me.bhop.bjdautilities.simulation;
+
+import me.bhop.bjdautilities.metrics.HistogramSnapshot;
+
+/**
+ * The outcome of an {@link EventReplayer} run.
+ */
+public final class ReplayReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadReport load;
+    private final int skipped;
+    private final HistogramSnapshot dispatch;
+    private final HistogramSnapshot lag;
+
+    ReplayReport(LoadReport load, int skipped, HistogramSnapshot dispatch, HistogramSnapshot lag) {
+        this.load = load;
+        this.skipped = skipped;
+        this.dispatch = dispatch;
+        this.lag = lag;
+    }
+
+    /**
+     * Get the throughput and the REST requests of the replay.
+     *
+     * @return the load report
+     */
+    public LoadReport getLoad() {
+        return load;
+    }
+
+    /**
+     * Get the number of recorded events which could not be replayed.
+     *
+     * @return the skipped event count
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Get how long the listeners took to handle each event.
+     *
+     * @return the dispatch latencies
+     */
+    public HistogramSnapshot getDispatch() {
+        return dispatch;
+    }
+
+    /**
+     * Get how late each event was handed over compared to its recorded time, which grows once the listeners cannot
+     * keep up with the replay speed.
+     *
+     * @return the lag
+     */
+    public HistogramSnapshot getLag() {
+        return lag;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(percentiles("dispatch", dispatch));
+        report.append(percentiles("lag", lag));
+        if (skipped > 0)
+            report.append(String.format("skipped     %d%n", skipped));
+        return report.append(load).toString();
+    }
+
+    private static String percentiles(String name, HistogramSnapshot histogram) {
+        StringBuilder line = new StringBuilder(String.format("%-12s", name));
+        for (double percentile : PERCENTILES)
+            line.append(String.format("p%s %.3f ms  ", percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile),
+                    histogram.getValueAtPercentile(percentile) / 1e6));
+        return line.append(String.format("max %.3f ms%n", histogram.getMax() / 1e6)).toString();
+    }
+}
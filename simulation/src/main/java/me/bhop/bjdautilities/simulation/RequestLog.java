@@ -0,0 +1,118 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.internal.requests.Route;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every REST request issued through a {@link SimulatedDiscord}, in the order they were issued.
+ */
+public final class RequestLog {
+    private final Queue<RecordedRequest> requests = new ConcurrentLinkedQueue<>();
+    private final Map<Route, LongAdder> counts = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder delay = new LongAdder();
+
+    void record(RecordedRequest request) {
+        requests.add(request);
+        counts.computeIfAbsent(request.getRoute(), route -> new LongAdder()).increment();
+        total.increment();
+        if (request.isRateLimited()) {
+            rateLimited.increment();
+            delay.add(request.getDelay());
+        }
+    }
+
+    /**
+     * Get a copy of the recorded requests.
+     *
+     * @return the requests
+     */
+    public List<RecordedRequest> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Get the number of recorded requests.
+     *
+     * @return the request count
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Get the number of recorded requests to a route.
+     *
+     * @param route the route
+     * @return the request count
+     */
+    public long getCount(Route route) {
+        LongAdder count = counts.get(route);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Get the number of recorded requests per route.
+     *
+     * @return the request counts
+     */
+    public Map<Route, Long> getCounts() {
+        Map<Route, Long> snapshot = new LinkedHashMap<>();
+        counts.forEach((route, count) -> snapshot.put(route, count.sum()));
+        return snapshot;
+    }
+
+    /**
+     * Get the number of requests per route recorded since an earlier snapshot of {@link #getCounts()}.
+     *
+     * @param before the earlier snapshot
+     * @return the request counts of the routes used since
+     */
+    Map<Route, Long> getCountsSince(Map<Route, Long> before) {
+        Map<Route, Long> since = new LinkedHashMap<>();
+        getCounts().forEach((route, count) -> {
+            long previous = before.getOrDefault(route, 0L);
+            if (count > previous)
+                since.put(route, count - previous);
+        });
+        return since;
+    }
+
+    /**
+     * Get the number of requests which were held back by the simulated rate limits.
+     *
+     * @return the rate limited request count
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Get how long requests were held back by the simulated rate limits in total.
+     *
+     * @return the total delay in nanoseconds
+     */
+    public long getTotalDelay() {
+        return delay.sum();
+    }
+
+    /**
+     * Forget every recorded request.
+     */
+    public void clear() {
+        requests.clear();
+        counts.clear();
+        total.reset();
+        rateLimited.reset();
+        delay.reset();
+    }
+}
@@ -0,0 +1,289 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.requests.Request;
+import net.dv8tion.jda.api.requests.Response;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.requests.Requester;
+import net.dv8tion.jda.internal.requests.Route;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers REST requests the way Discord would, for the routes used by the library.
+ *
+ * Messages sent or created through the simulation are kept, so they can be edited, retrieved and reacted to later.
+ * Only the most recent ones are kept, older messages are answered as unknown. Routes which are not simulated are
+ * answered with an empty response.
+ */
+final class RestResponder {
+    private final JDAImpl jda;
+    private final Map<Long, DataObject> messages;
+    private final Map<Long, Long> latest = new ConcurrentHashMap<>();
+
+    RestResponder(JDAImpl jda, int messageCache) {
+        this.jda = jda;
+        this.messages = Collections.synchronizedMap(new LinkedHashMap<Long, DataObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DataObject> eldest) {
+                return size() > messageCache;
+            }
+        });
+    }
+
+    /**
+     * Create the response to a request.
+     *
+     * @param request the request
+     * @param id a fresh snowflake for anything the request creates
+     * @return the response
+     */
+    Response respond(Request<?> request, long id) {
+        Route route = request.getRoute().getBaseRoute();
+        String[] path = path(request.getRoute().getCompiledRoute());
+
+        if (route.equals(Route.Messages.SEND_MESSAGE)) {
+            DataObject message = message(id, Long.parseLong(path[1]), jda.getSelfUser(), "");
+            merge(message, body(request.getBody()));
+            remember(message);
+            latest.put(Long.parseLong(path[1]), id);
+            return ok(message.toString());
+        }
+        if (route.equals(Route.Messages.EDIT_MESSAGE)) {
+            DataObject message = messages.get(Long.parseLong(path[3]));
+            if (message == null)
+                return unknownMessage();
+            synchronized (message) {
+                merge(message, body(request.getBody()));
+                message.put("edited_timestamp", TimeUtil.getTimeCreated(id).toString());
+                return ok(message.toString());
+            }
+        }
+        if (route.equals(Route.Messages.GET_MESSAGE)) {
+            DataObject message = messages.get(Long.parseLong(path[3]));
+            if (message == null)
+                return unknownMessage();
+            synchronized (message) {
+                return ok(message.toString());
+            }
+        }
+        if (route.equals(Route.Messages.DELETE_MESSAGE)) {
+            if (messages.remove(Long.parseLong(path[3])) == null)
+                return unknownMessage();
+            return empty();
+        }
+        if (route.equals(Route.Messages.ADD_REACTION) || route.equals(Route.Messages.REMOVE_REACTION)) {
+            DataObject message = messages.get(Long.parseLong(path[3]));
+            if (message != null) {
+                boolean self = path[6].equals("@me") || path[6].equals(jda.getSelfUser().getId());
+                react(message, decode(path[5]), route.equals(Route.Messages.ADD_REACTION) ? 1 : -1, self);
+            }
+            return empty();
+        }
+        if (route.equals(Route.Messages.REMOVE_ALL_REACTIONS)) {
+            DataObject message = messages.get(Long.parseLong(path[3]));
+            if (message != null) {
+                synchronized (message) {
+                    message.put("reactions", DataArray.empty());
+                }
+            }
+            return empty();
+        }
+        if (route.equals(Route.Messages.GET_REACTION_USERS) || route.equals(Route.Messages.GET_MESSAGE_HISTORY)
+                || route.equals(Route.Interactions.GET_COMMANDS) || route.equals(Route.Interactions.GET_GUILD_COMMANDS))
+            return ok("[]");
+        if (route.equals(Route.Users.GET_USER)) {
+            User user = jda.getUserById(path[1]);
+            return ok((user != null ? user(user) : user(Long.parseLong(path[1]), "user" + path[1])).toString());
+        }
+        if (route.equals(Route.Guilds.GET_MEMBER)) {
+            User user = jda.getUserById(path[3]);
+            DataObject member = DataObject.empty()
+                    .put("user", user != null ? user(user) : user(Long.parseLong(path[3]), "user" + path[3]))
+                    .put("roles", DataArray.empty())
+                    .put("joined_at", TimeUtil.getTimeCreated(id).toString())
+                    .put("deaf", false)
+                    .put("mute", false);
+            return ok(member.toString());
+        }
+        return empty();
+    }
+
+    /**
+     * Keep a message, so later requests can find it.
+     *
+     * @param message the message
+     */
+    void remember(DataObject message) {
+        messages.put(message.getLong("id"), message);
+    }
+
+    /**
+     * Add or remove a reaction of a message, if it is still remembered.
+     *
+     * @param messageId the message id
+     * @param emoji the unicode emoji
+     * @param add whether the reaction is added or removed
+     * @param self whether the bot changed the reaction
+     */
+    void react(long messageId, String emoji, boolean add, boolean self) {
+        DataObject message = messages.get(messageId);
+        if (message != null)
+            react(message, emoji, add ? 1 : -1, self);
+    }
+
+    /**
+     * Get a copy of the json of the last message the bot sent in a channel, if it is still remembered.
+     *
+     * @param channelId the channel id
+     * @return the json, or null if there is none
+     */
+    DataObject latest(long channelId) {
+        Long id = latest.get(channelId);
+        DataObject message = id == null ? null : messages.get(id);
+        if (message == null)
+            return null;
+        synchronized (message) {
+            return DataObject.fromJson(message.toString());
+        }
+    }
+
+    /**
+     * Create the json of a message.
+     *
+     * @param id the message id
+     * @param channelId the channel id
+     * @param author the author
+     * @param content the content
+     * @return the json
+     */
+    DataObject message(long id, long channelId, User author, String content) {
+        return DataObject.empty()
+                .put("id", Long.toUnsignedString(id))
+                .put("channel_id", Long.toUnsignedString(channelId))
+                .put("type", 0)
+                .put("content", content)
+                .put("author", user(author))
+                .put("timestamp", TimeUtil.getTimeCreated(id).toString())
+                .put("edited_timestamp", null)
+                .put("tts", false)
+                .put("mention_everyone", false)
+                .put("pinned", false)
+                .put("flags", 0)
+                .put("mentions", DataArray.empty())
+                .put("mention_roles", DataArray.empty())
+                .put("attachments", DataArray.empty())
+                .put("embeds", DataArray.empty())
+                .put("reactions", DataArray.empty());
+    }
+
+    private static DataObject user(User user) {
+        return user(user.getIdLong(), user.getName()).put("bot", user.isBot());
+    }
+
+    private static DataObject user(long id, String name) {
+        return DataObject.empty()
+                .put("id", Long.toUnsignedString(id))
+                .put("username", name)
+                .put("discriminator", "0000")
+                .put("avatar", null);
+    }
+
+    private static void merge(DataObject message, DataObject body) {
+        if (body.hasKey("content"))
+            message.put("content", body.isNull("content") ? "" : body.getString("content"));
+        if (body.hasKey("embeds"))
+            message.put("embeds", body.isNull("embeds") ? DataArray.empty() : body.getArray("embeds"));
+    }
+
+    private static void react(DataObject message, String emoji, int change, boolean self) {
+        synchronized (message) {
+            DataArray reactions = message.getArray("reactions");
+            DataArray updated = DataArray.empty();
+            boolean found = false;
+            for (int i = 0; i < reactions.length(); i++) {
+                DataObject reaction = reactions.getObject(i);
+                if (reaction.getObject("emoji").getString("name").equals(emoji)) {
+                    found = true;
+                    reaction.put("count", reaction.getInt("count") + change);
+                    if (self)
+                        reaction.put("me", change > 0);
+                    if (reaction.getInt("count") <= 0)
+                        continue;
+                }
+                updated.add(reaction);
+            }
+            if (!found && change > 0) {
+                updated.add(DataObject.empty()
+                        .put("count", 1)
+                        .put("me", self)
+                        .put("emoji", DataObject.empty().put("id", null).put("name", emoji)));
+            }
+            message.put("reactions", updated);
+        }
+    }
+
+    private static DataObject body(RequestBody body) {
+        if (body == null)
+            return DataObject.empty();
+        MediaType type = body.contentType();
+        if (type == null || !"json".equals(type.subtype()))
+            return DataObject.empty();
+        try (Buffer buffer = new Buffer()) {
+            body.writeTo(buffer);
+            return DataObject.fromJson(buffer.readUtf8());
+        } catch (IOException e) {
+            return DataObject.empty();
+        }
+    }
+
+    private static String[] path(String compiledRoute) {
+        int query = compiledRoute.indexOf('?');
+        return (query < 0 ? compiledRoute : compiledRoute.substring(0, query)).split("/");
+    }
+
+    private static String decode(String emoji) {
+        try {
+            return URLDecoder.decode(emoji, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return emoji;
+        }
+    }
+
+    private static Response ok(String json) {
+        return response(200, "OK", json);
+    }
+
+    private static Response empty() {
+        return response(204, "No Content", "");
+    }
+
+    private static Response unknownMessage() {
+        return response(404, "Not Found", "{\"code\":10008,\"message\":\"Unknown Message\"}");
+    }
+
+    private static Response response(int code, String message, String json) {
+        okhttp3.Response raw = new okhttp3.Response.Builder()
+                .request(new okhttp3.Request.Builder().url(Requester.DISCORD_API_PREFIX).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(message)
+                .body(ResponseBody.create(Requester.MEDIA_TYPE_JSON, json))
+                .build();
+        return new Response(raw, code, message, -1, Collections.emptySet());
+    }
+}
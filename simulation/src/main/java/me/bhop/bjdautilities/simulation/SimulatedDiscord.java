@@ -0,0 +1,416 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveEvent;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import net.dv8tion.jda.internal.entities.MemberImpl;
+import net.dv8tion.jda.internal.entities.RoleImpl;
+import net.dv8tion.jda.internal.entities.SelfUserImpl;
+import net.dv8tion.jda.internal.entities.TextChannelImpl;
+import net.dv8tion.jda.internal.entities.UserImpl;
+import net.dv8tion.jda.internal.requests.Route;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.cache.AbstractCacheView;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Discord which lives entirely in memory, for load testing the library without a bot token or network access.
+ *
+ * The {@link JDA} instance it provides is never connected. Guilds, channels, members and messages are created
+ * directly in its cache, and events about them can be handed to its listeners with {@link JDA}'s event manager, or
+ * at a steady rate with a {@link LoadDriver}. Every REST request the library makes is recorded in the
+ * {@link RequestLog} and answered locally, after the simulated latency and per route rate limits.
+ */
+public class SimulatedDiscord {
+    private static final long EVERYONE = Permission.getRaw(Permission.VIEW_CHANNEL, Permission.MESSAGE_SEND,
+            Permission.MESSAGE_HISTORY, Permission.MESSAGE_ADD_REACTION, Permission.MESSAGE_EMBED_LINKS);
+
+    private final SimulatedJDA jda;
+    private final SimulatedRequester requester;
+    private final RestResponder responder;
+    private final RequestLog requests = new RequestLog();
+    private final AtomicLong ids = new AtomicLong(TimeUtil.getDiscordTimestamp(System.currentTimeMillis()));
+    private final AtomicLong responses = new AtomicLong();
+
+    private final long latency;
+    private final Limit defaultRateLimit;
+    private final Limit globalRateLimit;
+    private final Map<Route, Limit> rateLimits;
+
+    private SimulatedDiscord(long latency, Limit defaultRateLimit, Limit globalRateLimit, Map<Route, Limit> rateLimits, int messageCache) {
+        this.latency = latency;
+        this.defaultRateLimit = defaultRateLimit;
+        this.globalRateLimit = globalRateLimit;
+        this.rateLimits = rateLimits;
+
+        this.jda = new SimulatedJDA();
+        SelfUserImpl self = new SelfUserImpl(nextId(), jda);
+        self.setName("bot").setBot(true);
+        jda.setSelfUser(self);
+        this.responder = new RestResponder(jda, messageCache);
+        this.requester = new SimulatedRequester(jda, this, responder);
+        jda.setRequester(requester);
+    }
+
+    /**
+     * Get the simulated JDA instance, which listeners should be registered on.
+     *
+     * @return the JDA instance
+     */
+    public JDAImpl getJDA() {
+        return jda;
+    }
+
+    /**
+     * Get the log of every REST request made through the simulated JDA instance.
+     *
+     * @return the request log
+     */
+    public RequestLog getRequests() {
+        return requests;
+    }
+
+    /**
+     * Create a new guild owned by the bot. Its public role may read, send and react to messages.
+     *
+     * @return the guild
+     */
+    public GuildImpl createGuild() {
+        long id = nextId();
+        GuildImpl guild = new GuildImpl(jda, id);
+        guild.setName("guild-" + id);
+        guild.setOwnerId(jda.getSelfUser().getIdLong());
+        RoleImpl everyone = new RoleImpl(id, guild).setName("@everyone").setRawPermissions(EVERYONE);
+        guild.setPublicRole(everyone);
+        cache(guild.getRolesView(), id, everyone);
+        cache(guild.getMembersView(), jda.getSelfUser().getIdLong(), new MemberImpl(guild, jda.getSelfUser()));
+        cache(jda.getGuildsView(), id, guild);
+        return guild;
+    }
+
+    /**
+     * Create a new text channel in a guild.
+     *
+     * @param guild the guild
+     * @return the channel
+     */
+    public TextChannelImpl createChannel(GuildImpl guild) {
+        long id = nextId();
+        TextChannelImpl channel = new TextChannelImpl(id, guild);
+        channel.setName("channel-" + id);
+        cache(guild.getTextChannelsView(), id, channel);
+        cache(jda.getTextChannelsView(), id, channel);
+        return channel;
+    }
+
+    /**
+     * Create a new member of a guild. Besides the permissions of the public role, the member is given a role with
+     * the given permissions.
+     *
+     * @param guild the guild
+     * @param permissions the extra permissions
+     * @return the member
+     */
+    public MemberImpl createMember(GuildImpl guild, Permission... permissions) {
+        long id = nextId();
+        UserImpl user = new UserImpl(id, jda).setName("user-" + id).setDiscriminator("0000");
+        cache(jda.getUsersView(), id, user);
+        MemberImpl member = new MemberImpl(guild, user);
+        if (permissions.length > 0) {
+            long roleId = nextId();
+            RoleImpl role = new RoleImpl(roleId, guild).setName("role-" + roleId).setRawPermissions(Permission.getRaw(permissions));
+            cache(guild.getRolesView(), roleId, role);
+            member.getRoleSet().add(role);
+        }
+        cache(guild.getMembersView(), id, member);
+        return member;
+    }
+
+    /**
+     * Create a message which a member has sent. It is known to the simulated REST layer, so it can be retrieved,
+     * edited and reacted to.
+     *
+     * @param channel the channel the message was sent in
+     * @param author the author
+     * @param content the content
+     * @return the message
+     */
+    public Message createMessage(TextChannel channel, Member author, String content) {
+        DataObject json = responder.message(nextId(), channel.getIdLong(), author.getUser(), content);
+        responder.remember(json);
+        return jda.getEntityBuilder().createMessageWithChannel(json, channel, false);
+    }
+
+    /**
+     * Create the event of a member sending a message.
+     *
+     * @param channel the channel the message was sent in
+     * @param author the author
+     * @param content the content
+     * @return the event
+     */
+    public MessageReceivedEvent messageReceived(TextChannel channel, Member author, String content) {
+        return new MessageReceivedEvent(jda, responses.incrementAndGet(), createMessage(channel, author, content));
+    }
+
+    /**
+     * Create the event of a member adding a reaction to a message. The reaction is added to the message as known
+     * to the simulated REST layer.
+     *
+     * @param message the message
+     * @param member the member
+     * @param emoji the unicode emoji
+     * @return the event
+     */
+    public MessageReactionAddEvent reactionAdded(Message message, Member member, String emoji) {
+        responder.react(message.getIdLong(), emoji, true, member.getIdLong() == jda.getSelfUser().getIdLong());
+        MessageReaction reaction = new MessageReaction(message.getChannel(), MessageReaction.ReactionEmote.fromUnicode(emoji, jda),
+                message.getIdLong(), false, 1);
+        return new MessageReactionAddEvent(jda, responses.incrementAndGet(), member.getUser(), member, reaction, member.getIdLong());
+    }
+
+    /**
+     * Create the event of a member removing a reaction from a message. The reaction is removed from the message as
+     * known to the simulated REST layer.
+     *
+     * @param message the message
+     * @param member the member
+     * @param emoji the unicode emoji
+     * @return the event
+     */
+    public MessageReactionRemoveEvent reactionRemoved(Message message, Member member, String emoji) {
+        responder.react(message.getIdLong(), emoji, false, member.getIdLong() == jda.getSelfUser().getIdLong());
+        MessageReaction reaction = new MessageReaction(message.getChannel(), MessageReaction.ReactionEmote.fromUnicode(emoji, jda),
+                message.getIdLong(), false, 0);
+        return new MessageReactionRemoveEvent(jda, responses.incrementAndGet(), member.getUser(), member, reaction, member.getIdLong());
+    }
+
+    /**
+     * Get the last message the bot sent in a channel, e.g. the message of a menu it just displayed.
+     *
+     * @param channel the channel
+     * @return the message, or null if the bot has not sent one or it is no longer remembered
+     */
+    public Message getLatestMessage(TextChannel channel) {
+        DataObject json = responder.latest(channel.getIdLong());
+        return json == null ? null : jda.getEntityBuilder().createMessageWithChannel(json, channel, false);
+    }
+
+    /**
+     * Wait until every REST request has been answered and no new ones have been made for a moment, e.g. after
+     * handing events to listeners which work asynchronously.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return whether the simulation went idle before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long seen = -1;
+        while (System.nanoTime() - deadline < 0) {
+            long count = requests.getCount();
+            if (requester.getPending() == 0) {
+                if (count == seen)
+                    return true;
+                seen = count;
+            } else seen = -1;
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    /**
+     * Stop answering requests and release the threads of the simulation.
+     */
+    public void shutdown() {
+        requester.shutdown();
+        jda.shutdownThreads();
+    }
+
+    /**
+     * Get a new unique snowflake, created at the current time.
+     *
+     * @return the snowflake
+     */
+    public long nextId() {
+        long now = TimeUtil.getDiscordTimestamp(System.currentTimeMillis());
+        return ids.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    long getLatency() {
+        return latency;
+    }
+
+    Limit getRateLimit(Route route) {
+        Limit limit = rateLimits.getOrDefault(route, defaultRateLimit);
+        return limit == null || limit.requests == 0 ? null : limit;
+    }
+
+    Limit getGlobalRateLimit() {
+        return globalRateLimit;
+    }
+
+    private static <T> void cache(AbstractCacheView<T> view, long id, T entity) {
+        try (UnlockHook hook = view.writeLock()) {
+            view.getMap().put(id, entity);
+        }
+    }
+
+    /**
+     * A number of requests allowed per window.
+     */
+    static final class Limit {
+        final int requests;
+        final long window;
+
+        private Limit(int requests, long window, TimeUnit unit) {
+            this.requests = requests;
+            this.window = unit.toNanos(window);
+        }
+    }
+
+    private static final class SimulatedJDA extends JDAImpl {
+        private SimulatedJDA() {
+            super(new AuthorizationConfig("simulated"));
+            threadConfig.init(this::getIdentifierString);
+        }
+
+        private void setRequester(SimulatedRequester requester) {
+            this.requester = requester;
+        }
+
+        private void shutdownThreads() {
+            threadConfig.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a {@link SimulatedDiscord}. By default there is no latency, and the rate limits loosely follow the
+     * ones Discord applies to bots.
+     */
+    public static class Builder {
+        private long latency = 0;
+        private Limit defaultRateLimit = new Limit(5, 5, TimeUnit.SECONDS);
+        private Limit globalRateLimit = new Limit(50, 1, TimeUnit.SECONDS);
+        private final Map<Route, Limit> rateLimits = new HashMap<>();
+        private int messageCache = 10000;
+
+        public Builder() {
+            rateLimits.put(Route.Messages.DELETE_MESSAGE, new Limit(5, 1, TimeUnit.SECONDS));
+            rateLimits.put(Route.Messages.ADD_REACTION, new Limit(1, 250, TimeUnit.MILLISECONDS));
+            rateLimits.put(Route.Messages.REMOVE_REACTION, new Limit(1, 250, TimeUnit.MILLISECONDS));
+            rateLimits.put(Route.Messages.GET_MESSAGE, new Limit(50, 1, TimeUnit.SECONDS));
+            rateLimits.put(Route.Users.GET_USER, new Limit(50, 1, TimeUnit.SECONDS));
+            rateLimits.put(Route.Guilds.GET_MEMBER, new Limit(50, 1, TimeUnit.SECONDS));
+        }
+
+        /**
+         * Set how long every request takes to be answered, on top of any rate limit delay.
+         *
+         * @param latency the latency
+         * @param unit the unit of the latency
+         * @return the builder
+         */
+        public Builder setLatency(long latency, TimeUnit unit) {
+            if (latency < 0)
+                throw new IllegalArgumentException("The latency cannot be negative!");
+            this.latency = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * Set the rate limit of a route. Like on Discord, it applies separately to each channel or guild the route
+         * is used with.
+         *
+         * @param route the route, e.g. {@code Route.Messages.SEND_MESSAGE}
+         * @param requests the requests allowed per window, or 0 for no limit
+         * @param window the length of a window
+         * @param unit the unit of the window
+         * @return the builder
+         */
+        public Builder setRateLimit(Route route, int requests, long window, TimeUnit unit) {
+            rateLimits.put(route, limit(requests, window, unit));
+            return this;
+        }
+
+        /**
+         * Set the rate limit of every route without its own rate limit.
+         *
+         * @param requests the requests allowed per window, or 0 for no limit
+         * @param window the length of a window
+         * @param unit the unit of the window
+         * @return the builder
+         */
+        public Builder setDefaultRateLimit(int requests, long window, TimeUnit unit) {
+            this.defaultRateLimit = limit(requests, window, unit);
+            return this;
+        }
+
+        /**
+         * Set the rate limit shared by all requests.
+         *
+         * @param requests the requests allowed per window, or 0 for no limit
+         * @param window the length of a window
+         * @param unit the unit of the window
+         * @return the builder
+         */
+        public Builder setGlobalRateLimit(int requests, long window, TimeUnit unit) {
+            Limit limit = limit(requests, window, unit);
+            this.globalRateLimit = limit.requests == 0 ? null : limit;
+            return this;
+        }
+
+        /**
+         * Remove every rate limit, to measure the library on its own.
+         *
+         * @return the builder
+         */
+        public Builder disableRateLimits() {
+            rateLimits.clear();
+            defaultRateLimit = null;
+            globalRateLimit = null;
+            return this;
+        }
+
+        /**
+         * Set how many messages the simulated REST layer remembers. Older messages are answered as unknown.
+         *
+         * @param messageCache the number of messages
+         * @return the builder
+         */
+        public Builder setMessageCache(int messageCache) {
+            if (messageCache < 1)
+                throw new IllegalArgumentException("At least one message must be remembered!");
+            this.messageCache = messageCache;
+            return this;
+        }
+
+        public SimulatedDiscord build() {
+            return new SimulatedDiscord(latency, defaultRateLimit, globalRateLimit, new HashMap<>(rateLimits), messageCache);
+        }
+
+        private static Limit limit(int requests, long window, TimeUnit unit) {
+            if (requests < 0)
+                throw new IllegalArgumentException("The number of requests cannot be negative!");
+            if (requests > 0 && window <= 0)
+                throw new IllegalArgumentException("The rate limit window must be positive!");
+            return new Limit(requests, window, unit);
+        }
+    }
+}
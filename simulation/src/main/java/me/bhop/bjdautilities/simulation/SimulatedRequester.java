@@ -0,0 +1,84 @@
+package me.bhop.bjdautilities.simulation;
+
+import net.dv8tion.jda.api.requests.Request;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.requests.Requester;
+import net.dv8tion.jda.internal.requests.Route;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes the place of JDA's requester, so every request is recorded and answered locally instead of being sent
+ * to Discord.
+ */
+final class SimulatedRequester extends Requester {
+    private final SimulatedDiscord discord;
+    private final RestResponder responder;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, RateLimitBucket> buckets = new ConcurrentHashMap<>();
+    private final RateLimitBucket global;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    SimulatedRequester(JDAImpl jda, SimulatedDiscord discord, RestResponder responder) {
+        super(jda);
+        this.discord = discord;
+        this.responder = responder;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bjda-simulated-rest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        SimulatedDiscord.Limit limit = discord.getGlobalRateLimit();
+        this.global = limit == null ? null : new RateLimitBucket(limit.requests, limit.window);
+    }
+
+    @Override
+    public <T> void request(Request<T> request) {
+        Route route = request.getRoute().getBaseRoute();
+        String bucket = route.getMethod() + " " + route.getRoute() + ":" + request.getRoute().getMajorParameters();
+
+        long now = System.nanoTime();
+        long at = now;
+        SimulatedDiscord.Limit limit = discord.getRateLimit(route);
+        if (limit != null)
+            at = buckets.computeIfAbsent(bucket, key -> new RateLimitBucket(limit.requests, limit.window)).reserve(now);
+        if (global != null)
+            at = global.reserve(at);
+
+        discord.getRequests().record(new RecordedRequest(route, request.getRoute().getCompiledRoute(), bucket, now, at - now));
+        pending.incrementAndGet();
+        // Even without latency the response is delivered on another thread, like a real request.
+        scheduler.schedule(() -> respond(request), at - now + discord.getLatency(), TimeUnit.NANOSECONDS);
+    }
+
+    private <T> void respond(Request<T> request) {
+        try {
+            if (!request.isSkipped())
+                request.handleResponse(responder.respond(request, discord.nextId()));
+        } catch (Throwable t) {
+            request.onFailure(t);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of requests which have not been answered yet.
+     *
+     * @return the pending request count
+     */
+    int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,61 @@
+package me.bhop.bjdautilities;
+
+import me.bhop.bjdautilities.simulation.SimulatedDiscord;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Starts and cancels the updater of a message from several threads at once, which must never leave an updater
+ * running behind.
+ */
+public class EditableMessageStressTest {
+    private static final int THREADS = 4;
+
+    private static SimulatedDiscord discord;
+    private static TextChannel channel;
+
+    @BeforeClass
+    public static void setUp() {
+        discord = new SimulatedDiscord.Builder().disableRateLimits().build();
+        GuildImpl guild = discord.createGuild();
+        channel = discord.createChannel(guild);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        discord.shutdown();
+    }
+
+    @Test
+    public void cancelWhileStarting() throws InterruptedException {
+        EditableMessage message = EditableMessage.wrap(discord.createMessage(channel, channel.getGuild().getSelfMember(), "0"));
+        AtomicInteger updates = new AtomicInteger();
+
+        Stress.run(THREADS, 1000, (thread, iteration, random) -> {
+            if (random.nextBoolean()) {
+                try {
+                    message.setTextRepeat(() -> String.valueOf(updates.incrementAndGet()), 1);
+                } catch (UnsupportedOperationException ignored) {
+                    // Another thread's updater is running, which is fine.
+                }
+            } else {
+                message.cancelUpdater();
+            }
+        });
+
+        message.cancelUpdater();
+        // Let an update which was already running finish, then make sure no forgotten updater is still ticking.
+        Thread.sleep(100);
+        int cancelled = updates.get();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(3));
+        assertEquals("An updater kept running after it was cancelled", cancelled, updates.get());
+    }
+}
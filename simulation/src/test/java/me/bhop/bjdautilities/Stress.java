@@ -0,0 +1,77 @@
+package me.bhop.bjdautilities;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an action on several threads at once to shake out races.
+ *
+ * All threads are released together and each is given its own random generator, seeded from a shared seed. The seed
+ * is part of every failure, and a failing run can be repeated with {@code -Dstress.seed=<seed>}, although the
+ * interleaving of the threads will differ.
+ */
+public final class Stress {
+    private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    private Stress() {
+    }
+
+    /**
+     * An action run by every thread of a stress test.
+     */
+    public interface Actor {
+        /**
+         * @param thread the index of the thread, from 0
+         * @param iteration the iteration of the thread, from 0
+         * @param random the random generator of the thread
+         * @throws Exception if the action failed, which fails the stress test
+         */
+        void act(int thread, int iteration, Random random) throws Exception;
+    }
+
+    /**
+     * Run an action on a number of threads, and wait for all of them to finish.
+     *
+     * @param threads the number of threads
+     * @param iterations the number of times each thread runs the action
+     * @param actor the action
+     * @throws InterruptedException if interrupted while waiting
+     * @throws AssertionError if any thread failed or the threads did not finish in time
+     */
+    public static void run(int threads, int iterations, Actor actor) throws InterruptedException {
+        long seed = Long.getLong("stress.seed", System.nanoTime());
+        CyclicBarrier start = new CyclicBarrier(threads);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed + thread);
+                try {
+                    start.await();
+                    for (int i = 0; i < iterations; i++)
+                        actor.act(thread, i, random);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-" + t);
+            workers[t].start();
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (worker.isAlive())
+                failures.add(new AssertionError(worker.getName() + " did not finish, it may be stuck in a corrupted structure"));
+        }
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " thread(s) failed with seed " + seed, failures.peek());
+            failures.stream().skip(1).forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.Stress;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.handler.GuildDependentCommandHandler;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.simulation.SimulatedDiscord;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Registers commands and changes prefixes while other threads dispatch messages.
+ */
+public class CommandHandlerStressTest {
+    private static final int ROUNDS = 20;
+    private static final int THREADS = 4;
+    private static final Class<?>[] COMMANDS = {Alpha.class, Beta.class, Gamma.class, Parent.class, Child.class};
+    private static final String[] MESSAGES = {"!alpha", "!beta", "!gamma", "!parent child", "!alpha one two"};
+    private static final int GUILDS = 64;
+
+    private static SimulatedDiscord discord;
+    private static final List<GuildImpl> guilds = new ArrayList<>();
+    private static final List<TextChannel> channels = new ArrayList<>();
+    private static final List<Member> members = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        discord = new SimulatedDiscord.Builder().disableRateLimits().build();
+        for (int i = 0; i < GUILDS; i++) {
+            GuildImpl guild = discord.createGuild();
+            guilds.add(guild);
+            channels.add(discord.createChannel(guild));
+            members.add(discord.createMember(guild));
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        discord.shutdown();
+    }
+
+    @Test
+    public void registerWhileDispatching() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            Executions executions = new Executions();
+            CommandHandler handler = base(executions).guildIndependent().setPrefix("!").build();
+            List<Class<?>> order = new ArrayList<>(Arrays.asList(COMMANDS));
+            Collections.shuffle(order, new Random(round));
+
+            Stress.run(THREADS, 200, (thread, iteration, random) -> {
+                if (thread == 0 && iteration < order.size())
+                    handler.register(order.get(iteration));
+                else if (random.nextInt(4) == 0)
+                    handler.getCommandsRecursive().forEach(cmd -> cmd.getChildren().size());
+                else
+                    dispatch(handler, 0, MESSAGES[random.nextInt(MESSAGES.length)]);
+            });
+
+            assertEquals(COMMANDS.length, handler.getCommandsRecursive().size());
+            for (String message : MESSAGES) {
+                String label = message.substring(1).replace(' ', '.');
+                int before = executions.get(label);
+                dispatch(handler, 0, message);
+                assertEquals("'" + message + "' after registering in the order " + order, before + 1, executions.get(label));
+            }
+        }
+    }
+
+    @Test
+    public void setPrefixWhileDispatching() throws InterruptedException {
+        int writers = THREADS / 2;
+        for (int round = 0; round < ROUNDS; round++) {
+            Executions executions = new Executions();
+            GuildDependentCommandHandler handler = base(executions).guildDependent().setDefaultPrefix("!").build();
+            handler.register(Alpha.class);
+            String[] written = new String[GUILDS];
+
+            Stress.run(THREADS, 500, (thread, iteration, random) -> {
+                if (thread < writers) {
+                    // Each writer owns its own guilds, so the last prefix it wrote must be the one that sticks.
+                    int guild = random.nextInt(GUILDS / writers) * writers + thread;
+                    written[guild] = "p" + thread + "-" + iteration + "!";
+                    handler.setPrefix(guilds.get(guild), written[guild]);
+                } else {
+                    int guild = random.nextInt(GUILDS);
+                    dispatch(handler, guild, handler.getPrefixes().getOrDefault(guilds.get(guild).getIdLong(), "!") + "alpha");
+                }
+            });
+
+            for (int guild = 0; guild < GUILDS; guild++) {
+                String prefix = written[guild] == null ? "!" : written[guild];
+                assertEquals(prefix, handler.getPrefixes().getOrDefault(guilds.get(guild).getIdLong(), "!"));
+                int before = executions.get("alpha");
+                dispatch(handler, guild, prefix + "alpha");
+                assertEquals("Dispatching in guild " + guild + " with prefix " + prefix, before + 1, executions.get("alpha"));
+            }
+        }
+    }
+
+    private static CommandHandler.Builder base(Executions executions) {
+        return new CommandHandler.Builder(discord.getJDA())
+                .setConcurrent(false)
+                .setDeleteCommands(false)
+                .setGenerateHelp(false)
+                .addCustomParameter(executions);
+    }
+
+    private static void dispatch(CommandHandler handler, int guild, String content) {
+        handler.onMessageReceived(discord.messageReceived(channels.get(guild), members.get(guild), content));
+    }
+
+    public static class Executions {
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        void increment(String label) {
+            counts.computeIfAbsent(label, key -> new AtomicInteger()).incrementAndGet();
+        }
+
+        int get(String label) {
+            AtomicInteger count = counts.get(label);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    @Command(label = "alpha")
+    public static class Alpha {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Executions executions) {
+            executions.increment(args.isEmpty() ? "alpha" : "alpha." + String.join(".", args));
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "beta")
+    public static class Beta {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Executions executions) {
+            executions.increment("beta");
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "gamma")
+    public static class Gamma {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Executions executions) {
+            executions.increment("gamma");
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "parent", children = Child.class)
+    public static class Parent {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Executions executions) {
+            executions.increment("parent");
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "child")
+    public static class Child {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Executions executions) {
+            executions.increment("parent.child");
+            return CommandResult.success();
+        }
+    }
+}
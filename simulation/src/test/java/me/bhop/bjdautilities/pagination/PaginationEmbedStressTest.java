@@ -0,0 +1,70 @@
+package me.bhop.bjdautilities.pagination;
+
+import me.bhop.bjdautilities.Stress;
+import me.bhop.bjdautilities.simulation.SimulatedDiscord;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.internal.entities.GuildImpl;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clicks the buttons of a single pagination menu from several threads at once.
+ */
+public class PaginationEmbedStressTest {
+    private static final int ROUNDS = 10;
+    private static final int THREADS = 4;
+    private static final int PAGES = 5;
+    private static final String PREVIOUS = "\u25C0", FORWARD = "\u25B6";
+
+    private static SimulatedDiscord discord;
+    private static TextChannel channel;
+    private static final List<Member> members = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        discord = new SimulatedDiscord.Builder().disableRateLimits().build();
+        GuildImpl guild = discord.createGuild();
+        channel = discord.createChannel(guild);
+        for (int i = 0; i < THREADS; i++)
+            members.add(discord.createMember(guild));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        discord.shutdown();
+    }
+
+    @Test
+    public void concurrentClicks() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            PaginationEmbed.Builder builder = new PaginationEmbed.Builder(discord.getJDA());
+            for (int page = 0; page < PAGES; page++)
+                builder.addPage(new PageBuilder().setTitle("page " + page).build());
+            PaginationEmbed embed = builder.buildAndDisplay(channel);
+            Message message = embed.getReactionMenu().getMessage();
+
+            Stress.run(THREADS, 100, (thread, iteration, random) -> {
+                String emoji = random.nextBoolean() ? FORWARD : PREVIOUS;
+                discord.getJDA().handleEvent(discord.reactionAdded(message, members.get(thread), emoji));
+                int page = embed.getCurrentPage();
+                assertTrue("Page " + page + " is out of range", page >= 0 && page < PAGES);
+            });
+
+            assertTrue(discord.awaitIdle(1, TimeUnit.MINUTES));
+            // The edits are sent in the order the page changed, so the last one shows the current page.
+            Message shown = discord.getLatestMessage(channel);
+            assertEquals("page " + embed.getCurrentPage(), shown.getEmbeds().get(0).getTitle());
+            embed.delete();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package me.bhop.bjdautilities;
+
+import gnu.trove.set.hash.TLongHashSet;
+import me.bhop.bjdautilities.command.CommandHandler;
+import me.bhop.bjdautilities.command.LoadedCommand;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.handler.GuildDependentCommandHandler;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.menu.ReactionMenu;
+import me.bhop.bjdautilities.pagination.PageBuilder;
+import me.bhop.bjdautilities.pagination.PaginationEmbed;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.*;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Measures how many bytes each live menu, message, command and guild setting retains, and checks them against the
+ * budgets in {@code benchmarks/footprint-budgets.properties}.
+ *
+ * Every subject is created 1k, 100k and 1M times while the previous ones are kept alive. The retained size is the
+ * growth of the used heap after a full collection, divided by the count. The smallest scale is only reported, since
+ * collector noise dominates it. Menus are built but not displayed, a displayed menu also retains the
+ * {@link EditableMessage} of its message.
+ *
+ * Usage: {@code FootprintHarness [--budgets <file>] [--scales 1000,100000,1000000] [--record]}. With
+ * {@code --record} the measured sizes plus 10% are written as the new budgets instead of being checked. Without it,
+ * a subject which has no budget fails the check.
+ */
+public class FootprintHarness {
+    private static final long GUILD = 100000000000000001L;
+    private static final long CHANNEL = 100000000000000002L;
+    private static final long AUTHOR = 100000000000000003L;
+    private static final double HEADROOM = 1.1;
+
+    private static final ListEventManager listeners = new ListEventManager();
+    private static final JDAImpl jda = new JDAImpl(new AuthorizationConfig("token"));
+    private static TextChannelImpl channel;
+    private static UserImpl author;
+    private static MemberImpl member;
+
+    public static void main(String[] args) throws IOException {
+        Path budgetsFile = Paths.get("benchmarks/footprint-budgets.properties");
+        int[] scales = {1000, 100000, 1000000};
+        boolean record = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--budgets"))
+                budgetsFile = Paths.get(args[++i]);
+            else if (args[i].equals("--scales"))
+                scales = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            else if (args[i].equals("--record"))
+                record = true;
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+        setUp();
+
+        Properties budgets = new Properties();
+        if (Files.exists(budgetsFile)) {
+            try (Reader reader = Files.newBufferedReader(budgetsFile)) {
+                budgets.load(reader);
+            }
+        }
+
+        System.out.printf("%-20s", "retained bytes");
+        for (int scale : scales)
+            System.out.printf("%12d", scale);
+        System.out.printf("%12s%n", "budget");
+
+        Map<String, Long> measured = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Supplier<IntFunction<Object>>> subject : subjects().entrySet()) {
+            String name = subject.getKey();
+            String budget = budgets.getProperty(name);
+            // A subject without a budget would never fail, so the check only passes once every budget is recorded.
+            if (!record && budget == null)
+                failures.add(name + " has no budget, record the budgets with gradle footprint -Pargs=--record");
+            System.out.printf("%-20s", name);
+            long largest = 0;
+            for (int s = 0; s < scales.length; s++) {
+                long retained = measure(subject.getValue(), scales[s]);
+                System.out.printf("%12d", retained);
+                if (s == 0 && scales.length > 1)
+                    continue;
+                largest = Math.max(largest, retained);
+                if (!record && budget != null && retained > Long.parseLong(budget))
+                    failures.add(name + " retains " + retained + " bytes at " + scales[s] + ", the budget is " + budget);
+            }
+            System.out.printf("%12s%n", budget == null ? "-" : budget);
+            measured.put(name, largest);
+        }
+
+        if (record) {
+            try (Writer writer = Files.newBufferedWriter(budgetsFile)) {
+                writer.write("# Retained bytes per live instance, checked by gradle footprint.\n");
+                writer.write("# Recorded with " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                        + ", update with gradle footprint -Pargs=--record.\n");
+                for (Map.Entry<String, Long> entry : measured.entrySet())
+                    writer.write(entry.getKey() + "=" + ((long) Math.ceil(entry.getValue() * HEADROOM / 8) * 8) + "\n");
+            }
+            System.out.println("Recorded the budgets in " + budgetsFile);
+        } else if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static Map<String, Supplier<IntFunction<Object>>> subjects() {
+        Map<String, Supplier<IntFunction<Object>>> subjects = new LinkedHashMap<>();
+        subjects.put("EditableMessage", () -> {
+            // The wrapped message belongs to JDA, only the wrapper itself is retained per instance.
+            Message message = message(0);
+            return i -> EditableMessage.wrap(message);
+        });
+        subjects.put("ReactionMenu", () -> i -> new ReactionMenu.Builder(jda)
+                .setMessage("Menu " + i)
+                .addStartingReaction("\u2705")
+                .addStartingReaction("\u274C")
+                .onClick("\u2705", menu -> {})
+                .onClick("\u274C", ReactionMenu::destroy)
+                .build());
+        subjects.put("PaginationEmbed", () -> i -> {
+            PaginationEmbed.Builder builder = new PaginationEmbed.Builder(jda);
+            for (int page = 0; page < 3; page++)
+                builder.addPage(new PageBuilder().setTitle("Page " + page).addContent(false, "Entry", "Line " + i).build());
+            return builder.build();
+        });
+        subjects.put("LoadedCommand", () -> {
+            List<Object> params = Collections.emptyList();
+            return i -> LoadedCommand.create(new Sample(), params);
+        });
+        subjects.put("GuildSettings", () -> {
+            GuildDependentCommandHandler handler = new CommandHandler.Builder(jda).setGenerateHelp(false).guildDependent().build();
+            return i -> {
+                // A guild with its own prefix and lifespans, as if they were loaded from storage.
+                long guild = GUILD + i;
+                handler.setPrefix(new GuildImpl(jda, guild), new String(new char[]{'?'}));
+                handler.getCommandLifespans().put(guild, 30L + i % 100);
+                handler.getResponseLifespans().put(guild, 60L + i % 100);
+                return handler;
+            };
+        });
+        return subjects;
+    }
+
+    private static long measure(Supplier<IntFunction<Object>> subject, int count) {
+        Object[] live = new Object[count];
+        IntFunction<Object> create = subject.get();
+        long before = usedHeap();
+        for (int i = 0; i < count; i++)
+            live[i] = create.apply(i);
+        long after = usedHeap();
+        long retained = (after - before) / count;
+        // Keeps every instance reachable until the heap has been measured.
+        if (live[count - 1] == null)
+            throw new IllegalStateException();
+        listeners.clear();
+        return retained;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (Math.abs(now - used) < used / 1000)
+                return now;
+            used = now;
+        }
+        return used;
+    }
+
+    private static void setUp() {
+        jda.setSelfUser(new SelfUserImpl(AUTHOR + 1, jda));
+        // Menus register themselves as listeners, which would take quadratic time with JDA's copy on write list.
+        jda.setEventManager(listeners);
+        GuildImpl guild = new GuildImpl(jda, GUILD);
+        channel = new TextChannelImpl(CHANNEL, guild);
+        author = new UserImpl(AUTHOR, jda);
+        member = new MemberImpl(guild, author);
+    }
+
+    private static Message message(int index) {
+        return new ReceivedMessage(200000000000000000L + index, channel, MessageType.DEFAULT, null, false, false, new TLongHashSet(),
+                new TLongHashSet(), false, false, "Message " + index, null, author, member, null, null, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, null);
+    }
+
+    private static final class ListEventManager implements IEventManager {
+        private final List<Object> listeners = new ArrayList<>();
+
+        @Override
+        public void register(Object listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void unregister(Object listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public void handle(GenericEvent event) {
+        }
+
+        @Override
+        public List<Object> getRegisteredListeners() {
+            return Collections.unmodifiableList(listeners);
+        }
+
+        private void clear() {
+            listeners.clear();
+        }
+    }
+
+    @Command(label = "sample", usage = "sample <argument>")
+    public static class Sample {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package me.bhop.bjdautilities;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.*;
+import net.dv8tion.jda.internal.utils.UnlockHook;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+
+import java.util.Collections;
+
+/**
+ * A single guild with one channel and one member, built from JDA's own entities without connecting to Discord.
+ * Events made from it can be handed straight to listeners, but anything which sends a request will fail.
+ */
+public class DiscordFixture {
+    private static final long GUILD = 100000000000000001L;
+    private static final long CHANNEL = 100000000000000002L;
+    private static final long AUTHOR = 100000000000000003L;
+    private static final long SELF = 100000000000000004L;
+
+    public final JDAImpl jda;
+    public final GuildImpl guild;
+    public final TextChannelImpl channel;
+    public final UserImpl author;
+    public final MemberImpl member;
+
+    public DiscordFixture() {
+        jda = new JDAImpl(new AuthorizationConfig("token"));
+        SelfUserImpl self = new SelfUserImpl(SELF, jda);
+        jda.setSelfUser(self);
+
+        guild = new GuildImpl(jda, GUILD);
+        guild.setOwnerId(SELF);
+        RoleImpl everyone = new RoleImpl(GUILD, guild);
+        everyone.setRawPermissions(Permission.MESSAGE_SEND.getRawValue());
+        guild.setPublicRole(everyone);
+        channel = new TextChannelImpl(CHANNEL, guild);
+        author = new UserImpl(AUTHOR, jda);
+        member = new MemberImpl(guild, author);
+        try (UnlockHook hook = guild.getMembersView().writeLock()) {
+            guild.getMembersView().getMap().put(SELF, new MemberImpl(guild, self));
+            guild.getMembersView().getMap().put(AUTHOR, member);
+        }
+    }
+
+    /**
+     * Create a message sent by the member.
+     *
+     * @param id the message id
+     * @param content the content
+     * @return the message
+     */
+    public ReceivedMessage message(long id, String content) {
+        return new ReceivedMessage(id, channel, MessageType.DEFAULT, null, false, false, new TLongHashSet(), new TLongHashSet(),
+                false, false, content, null, author, member, null, null, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, null);
+    }
+
+    /**
+     * Create the event of the member sending a message.
+     *
+     * @param id the message id
+     * @param content the content
+     * @return the event
+     */
+    public MessageReceivedEvent messageReceived(long id, String content) {
+        return new MessageReceivedEvent(jda, 0, message(id, content));
+    }
+
+    /**
+     * Create the event of the member reacting to a message.
+     *
+     * @param messageId the id of the message
+     * @param emoji the unicode emoji
+     * @return the event
+     */
+    public MessageReactionAddEvent reactionAdded(long messageId, String emoji) {
+        MessageReaction reaction = new MessageReaction(channel, MessageReaction.ReactionEmote.fromUnicode(emoji, jda), messageId, false, 1);
+        return new MessageReactionAddEvent(jda, 0, author, member, reaction, AUTHOR);
+    }
+}
@@ -0,0 +1,60 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.DiscordFixture;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.handler.GuildIndependentCommandHandler;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatching a message through {@link CommandHandler#onMessageReceived(MessageReceivedEvent)}, from the event to
+ * the result of the command. Commands run on the calling thread, so the hand-off to the executor is not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDispatchBenchmark {
+    @Param({"!ping", "!ping first second third", "not a command"})
+    public String content;
+
+    private CommandHandler handler;
+    private MessageReceivedEvent event;
+
+    @Setup
+    public void setUp() {
+        DiscordFixture discord = new DiscordFixture();
+        handler = new GuildIndependentCommandHandler.Builder(new CommandHandler.Builder(discord.jda)
+                .setConcurrent(false)
+                .setDeleteCommands(false)
+                .setDeduplicateMessages(false)
+                .setGenerateHelp(false))
+                .setPrefix("!")
+                .build();
+        handler.register(new Ping());
+        event = discord.messageReceived(200000000000000000L, content);
+    }
+
+    @Benchmark
+    public void onMessageReceived() {
+        handler.onMessageReceived(event);
+    }
+
+    @Command(label = "ping")
+    public static class Ping {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.DiscordFixture;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executing a {@link LoadedCommand} whose target is nested {@code depth} sub commands below the root.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadedCommandBenchmark {
+    private static final Class<?>[] LEVELS = {Level0.class, Level1.class, Level2.class, Level3.class, Level4.class};
+
+    @Param({"0", "1", "2", "4"})
+    public int depth;
+
+    private DiscordFixture discord;
+    private Message message;
+    private LoadedCommand root;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        discord = new DiscordFixture();
+        message = discord.message(200000000000000000L, "");
+        LoadedCommand parent = null;
+        for (int i = 0; i <= depth; i++) {
+            LoadedCommand cmd = LoadedCommand.create(LEVELS[i].newInstance(), Collections.emptyList());
+            if (parent == null)
+                root = cmd;
+            else parent.registerChild(cmd);
+            parent = cmd;
+        }
+        tokens = new String[depth];
+        for (int i = 0; i < depth; i++)
+            tokens[i] = "level" + (i + 1);
+    }
+
+    @Benchmark
+    public CommandResult execute() {
+        return root.execute(discord.member, discord.channel, message, "level0", new ArgumentList(tokens, 0));
+    }
+
+    @Command(label = "level0", children = Level1.class)
+    public static class Level0 {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "level1", children = Level2.class)
+    public static class Level1 {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "level2", children = Level3.class)
+    public static class Level2 {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "level3", children = Level4.class)
+    public static class Level3 {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "level4")
+    public static class Level4 {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package me.bhop.bjdautilities.command.provided;
+
+import me.bhop.bjdautilities.DiscordFixture;
+import me.bhop.bjdautilities.command.LoadedCommand;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.pagination.Page;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating every page of the help for a number of registered commands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpCommandBenchmark {
+    @Param({"10", "100", "1000"})
+    public int commands;
+
+    @Param({"false", "true"})
+    public boolean usePermissions;
+
+    private DiscordFixture discord;
+    private HelpCommand help;
+    private Set<LoadedCommand> registered;
+
+    @Setup
+    public void setUp() {
+        discord = new DiscordFixture();
+        help = new HelpCommand(5, guild -> "!", usePermissions);
+        registered = new HashSet<>();
+        for (int i = 0; i < commands; i++)
+            registered.add(LoadedCommand.create(i % 2 == 0 ? new Simple() : new Described(), Collections.emptyList()));
+    }
+
+    @Benchmark
+    public List<Page> generatePages() {
+        return help.generatePages(discord.member, registered);
+    }
+
+    @Command(label = "simple")
+    public static class Simple {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = {"described", "desc", "d"}, usage = "described <target>", description = "A command with aliases, usage and a description.", permission = Permission.MESSAGE_SEND)
+    public static class Described {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args) {
+            return CommandResult.success();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package me.bhop.bjdautilities.menu;
+
+import me.bhop.bjdautilities.DiscordFixture;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing a reaction through the event manager while {@code menus} reaction menus are live. Every menu is its
+ * own listener, so each reaction is offered to all of them and handled by the one on the reacted message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactionMenuBenchmark {
+    private static final String EMOJI = "\u2B05";
+
+    @Param({"1", "100", "1000"})
+    public int menus;
+
+    private DiscordFixture discord;
+    private MessageReactionAddEvent event;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        discord = new DiscordFixture();
+        long first = 300000000000000000L;
+        for (int i = 0; i < menus; i++) {
+            new ReactionMenu.Import(discord.message(first + i, "menu " + i))
+                    .onClick(EMOJI, menu -> this.blackhole.consume(menu))
+                    .setRemoveReactions(false)
+                    .build();
+        }
+        // The menu registered last, so the reaction passes every other menu first.
+        event = discord.reactionAdded(first + menus - 1, EMOJI);
+    }
+
+    @Benchmark
+    public void route() {
+        discord.jda.handleEvent(event);
+    }
+}
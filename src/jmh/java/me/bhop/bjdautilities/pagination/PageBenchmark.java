@@ -0,0 +1,42 @@
+package me.bhop.bjdautilities.pagination;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a {@link Page} with a number of entries into an embed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageBenchmark {
+    @Param({"1", "5", "25"})
+    public int entries;
+
+    private Page page;
+
+    @Setup
+    public void setUp() {
+        PageBuilder builder = new PageBuilder()
+                .setEntryLimit(entries)
+                .includeTimestamp(true)
+                .setColor(Color.CYAN)
+                .setTitle("Title", "https://example.com")
+                .setDescription("A page rendered by the benchmark.")
+                .setFooter("Page 1 of 1");
+        for (int i = 0; i < entries; i++)
+            builder.addContent(false, "Entry " + i, "\u2022\u0020First line", "\u2022\u0020Second line", "\u2022\u0020Third line");
+        page = builder.build();
+    }
+
+    @Benchmark
+    public MessageEmbed getGeneratedPage() {
+        return page.getGeneratedPage();
+    }
+}
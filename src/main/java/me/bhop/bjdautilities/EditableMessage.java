@@ -1,5 +1,8 @@
 package me.bhop.bjdautilities;
 
+import me.bhop.bjdautilities.metrics.LibraryMetrics;
+import me.bhop.bjdautilities.metrics.LibraryMetrics.Route;
+import me.bhop.bjdautilities.metrics.jfr.FlightEvents;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.*;
@@ -23,12 +26,18 @@ import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class EditableMessage implements Message {
     private static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
 
+    static {
+        LibraryMetrics.registerExecutor("editable-message", (ThreadPoolExecutor) executor);
+    }
+
     public static EditableMessage wrap(Message message) {
         return new EditableMessage(message);
     }
@@ -46,7 +55,7 @@ public class EditableMessage implements Message {
      * @param content the new content
      */
     public void setContent(String content) {
-        delegate.editMessage(new MessageBuilder(content).build()).queue();
+        LibraryMetrics.queue(Route.EDIT_MESSAGE, delegate.editMessage(new MessageBuilder(content).build()), edited(FlightEvents.beginEdit()));
     }
 
     /**
@@ -55,7 +64,14 @@ public class EditableMessage implements Message {
      * @param content the new content
      */
     public void setContent(MessageEmbed content) {
-        delegate.editMessageEmbeds(content).queue();
+        LibraryMetrics.queue(Route.EDIT_MESSAGE, delegate.editMessageEmbeds(content), edited(FlightEvents.beginEdit()));
+    }
+
+    private Consumer<Message> edited(Object flight) {
+        if (flight == null)
+            return null;
+        long trace = FlightEvents.getTrace();
+        return m -> FlightEvents.commitEdit(flight, m.isFromGuild() ? m.getGuild().getIdLong() : 0, m.getIdLong(), trace);
     }
 
     /**
@@ -66,7 +82,7 @@ public class EditableMessage implements Message {
      * @param updater a supplier of the new content
      * @param interval the interval of the update, in seconds
      */
-    public void setTextRepeat(Supplier<String> updater, int interval) {
+    public synchronized void setTextRepeat(Supplier<String> updater, int interval) {
         if (task == null)
             task = executor.scheduleAtFixedRate(() -> setContent(updater.get()), interval, interval, TimeUnit.SECONDS);
         else throw new UnsupportedOperationException("You may only run one updater at a time!");
@@ -80,7 +96,7 @@ public class EditableMessage implements Message {
      * @param updater a supplier of the new content
      * @param interval the interval of the update, in seconds
      */
-    public void setEmbedRepeat(Supplier<MessageEmbed> updater, int interval) {
+    public synchronized void setEmbedRepeat(Supplier<MessageEmbed> updater, int interval) {
         if (task == null)
             task = executor.scheduleAtFixedRate(() -> setContent(updater.get()), interval, interval, TimeUnit.SECONDS);
         else throw new UnsupportedOperationException("You may only run one updater at a time!");
@@ -94,13 +110,13 @@ public class EditableMessage implements Message {
      * @param jda the {@link JDA} instance
      */
     public void refreshMessage(JDA jda) {
-        delegate = jda.getTextChannelById(delegate.getChannel().getIdLong()).retrieveMessageById(delegate.getIdLong()).complete();
+        delegate = LibraryMetrics.complete(Route.RETRIEVE_MESSAGE, jda.getTextChannelById(delegate.getChannel().getIdLong()).retrieveMessageById(delegate.getIdLong()));
     }
 
     /**
      * Cancels the content updater, if it is running.
      */
-    public void cancelUpdater() {
+    public synchronized void cancelUpdater() {
         if (task != null)
             task.cancel(true);
         task = null;
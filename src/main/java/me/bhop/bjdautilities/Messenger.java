@@ -25,6 +25,8 @@
 
 package me.bhop.bjdautilities;
 
+import me.bhop.bjdautilities.metrics.LibraryMetrics;
+import me.bhop.bjdautilities.metrics.LibraryMetrics.Route;
 import net.dv8tion.jda.api.MessageBuilder;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageChannel;
@@ -32,13 +34,17 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * A utility class for sending {@link Message}s with convenient helpers.
  */
 public class Messenger {
+    private static final AtomicInteger instances = new AtomicInteger();
+
     private final ScheduledExecutorService murderer;
 
     /**
@@ -55,6 +61,7 @@ public class Messenger {
      */
     public Messenger(int threadCount) {
         murderer = Executors.newScheduledThreadPool(threadCount);
+        LibraryMetrics.registerExecutor("messenger-" + instances.incrementAndGet(), (ThreadPoolExecutor) murderer);
     }
 
     /**
@@ -212,9 +219,9 @@ public class Messenger {
      * @return the sent message
      */
     public EditableMessage sendMessage(MessageChannel channel, Message message, int lifetime) {
-        Message sent = channel.sendMessage(message).complete();
+        Message sent = LibraryMetrics.complete(Route.SEND_MESSAGE, channel.sendMessage(message));
         if (lifetime != -1)
-            murderer.schedule(() -> sent.delete().queue(), lifetime, TimeUnit.SECONDS);
+            murderer.schedule(() -> LibraryMetrics.queue(Route.DELETE_MESSAGE, sent.delete(), null), lifetime, TimeUnit.SECONDS);
         return EditableMessage.wrap(sent);
     }
 
@@ -228,9 +235,9 @@ public class Messenger {
      * @return the sent message
      */
     public EditableMessage sendReplyMessage(Message replyTo, Message message, int lifetime, boolean tagUser) {
-        Message sent = replyTo.reply(message).mentionRepliedUser(tagUser).complete();
+        Message sent = LibraryMetrics.complete(Route.SEND_MESSAGE, replyTo.reply(message).mentionRepliedUser(tagUser));
         if (lifetime != -1)
-            murderer.schedule(() -> sent.delete().queue(), lifetime, TimeUnit.SECONDS);
+            murderer.schedule(() -> LibraryMetrics.queue(Route.DELETE_MESSAGE, sent.delete(), null), lifetime, TimeUnit.SECONDS);
         return EditableMessage.wrap(sent);
     }
 
@@ -244,9 +251,9 @@ public class Messenger {
      */
     public void sendMessage(MessageChannel channel, Message message, int lifetime, Consumer<MessageChannel> onRemove) {
         channel.sendTyping().queue();
-        channel.sendMessage(message).queue(m -> {
+        LibraryMetrics.queue(Route.SEND_MESSAGE, channel.sendMessage(message), m -> {
             if (lifetime != -1)
-                murderer.schedule(() -> m.delete().queue($ -> {
+                murderer.schedule(() -> LibraryMetrics.queue(Route.DELETE_MESSAGE, m.delete(), $ -> {
                     if (onRemove != null)
                         onRemove.accept(channel);
                 }), lifetime, TimeUnit.SECONDS);
@@ -264,9 +271,9 @@ public class Messenger {
      */
     public void sendReplyMessage(Message replyTo, Message message, int lifetime, boolean tagUser, Consumer<Message> onRemove) {
         replyTo.getChannel().sendTyping().queue();
-        replyTo.reply(message).mentionRepliedUser(tagUser).queue(m -> {
+        LibraryMetrics.queue(Route.SEND_MESSAGE, replyTo.reply(message).mentionRepliedUser(tagUser), m -> {
             if (lifetime != -1)
-                murderer.schedule(() -> m.delete().queue($ -> {
+                murderer.schedule(() -> LibraryMetrics.queue(Route.DELETE_MESSAGE, m.delete(), $ -> {
                     if (onRemove != null)
                         onRemove.accept(replyTo);
                 }), lifetime, TimeUnit.SECONDS);
@@ -279,7 +286,7 @@ public class Messenger {
     }
 
     public void delete(MessageChannel channel, Long id, int time) {
-        delete(channel.retrieveMessageById(id).complete(), time);
+        delete(LibraryMetrics.complete(Route.RETRIEVE_MESSAGE, channel.retrieveMessageById(id)), time);
     }
 
     public void delete(Message message) {
@@ -288,8 +295,8 @@ public class Messenger {
 
     public void delete(Message message, int time) {
         if (time == -1)
-            message.delete().complete();
+            LibraryMetrics.complete(Route.DELETE_MESSAGE, message.delete());
         else
-            message.delete().queueAfter(time, TimeUnit.SECONDS);
+            LibraryMetrics.queueAfter(Route.DELETE_MESSAGE, message.delete(), time, TimeUnit.SECONDS, null);
     }
 }
@@ -0,0 +1,87 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The arguments of a command, read straight from the tokens of the message which invoked it.
+ *
+ * Commands may modify their arguments, so the tokens are copied into a regular list the first time this is
+ * modified. Until then, handing arguments to a command or one of its sub commands does not copy anything.
+ */
+final class ArgumentList extends AbstractList<String> implements RandomAccess {
+    private final String[] tokens;
+    private final int offset;
+    private List<String> copy = null;
+
+    /**
+     * @param tokens the message tokens
+     * @param offset the index of the first argument within the tokens
+     */
+    ArgumentList(String[] tokens, int offset) {
+        this.tokens = tokens;
+        this.offset = Math.min(offset, tokens.length);
+    }
+
+    /**
+     * Get the arguments after the first one, e.g. for a sub command.
+     *
+     * @return the remaining arguments
+     */
+    ArgumentList tail() {
+        if (copy == null)
+            return new ArgumentList(tokens, offset + 1);
+        return new ArgumentList(copy.toArray(new String[0]), 1);
+    }
+
+    /**
+     * Get a new list of the arguments as they were before this list was modified, e.g. to hand to a usage method
+     * once the command has had its own list.
+     *
+     * @return the unmodified arguments
+     */
+    ArgumentList original() {
+        return new ArgumentList(tokens, offset);
+    }
+
+    @Override
+    public String get(int index) {
+        if (copy != null)
+            return copy.get(index);
+        if (index < 0 || index >= tokens.length - offset)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return tokens[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return copy != null ? copy.size() : tokens.length - offset;
+    }
+
+    @Override
+    public String set(int index, String element) {
+        return modifiable().set(index, element);
+    }
+
+    @Override
+    public void add(int index, String element) {
+        modifiable().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public String remove(int index) {
+        String removed = modifiable().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    private List<String> modifiable() {
+        if (copy == null)
+            copy = new ArrayList<>(Arrays.asList(tokens).subList(offset, tokens.length));
+        return copy;
+    }
+}
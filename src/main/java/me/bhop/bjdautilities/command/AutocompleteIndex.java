@@ -0,0 +1,245 @@
+package me.bhop.bjdautilities.command;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory index of autocomplete choices, searched by case insensitive prefix.
+ *
+ * Entries are kept in a sorted array, so every entry matching a prefix is found with a binary search and
+ * returned as a view of the backing choices without copying. Updates are incremental and copy on write,
+ * which keeps lookups lock free. This makes it suitable for answering autocomplete interactions directly,
+ * while updates (which are expected to be far less frequent) pay the cost.
+ *
+ * Entries are unique by their case insensitive name, adding an entry with an existing name replaces it.
+ *
+ * @see me.bhop.bjdautilities.command.annotation.Autocomplete
+ */
+public class AutocompleteIndex {
+    private static final Snapshot EMPTY = new Snapshot(new String[0], new Command.Choice[0]);
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * Add a choice whose name and value are the same.
+     *
+     * @param value the choice name and value
+     */
+    public void add(String value) {
+        add(value, value);
+    }
+
+    /**
+     * Add a choice, replacing any existing choice with the same name.
+     *
+     * @param name the name displayed to the user, which is what the prefix is matched against
+     * @param value the value submitted when the choice is selected
+     */
+    public void add(String name, String value) {
+        synchronized (lock) {
+            snapshot = snapshot.with(fold(name), new Command.Choice(name, value));
+        }
+    }
+
+    /**
+     * Add several choices at once, replacing any existing choices with the same names.
+     *
+     * @param choices the choice names mapped to their values
+     */
+    public void addAll(Map<String, String> choices) {
+        if (choices.isEmpty())
+            return;
+        Entry[] entries = new Entry[choices.size()];
+        int i = 0;
+        for (Map.Entry<String, String> choice : choices.entrySet())
+            entries[i++] = new Entry(fold(choice.getKey()), new Command.Choice(choice.getKey(), choice.getValue()));
+        // Stable, so of several names which fold to the same key the last one wins, as it would when added one by one.
+        Arrays.sort(entries, (a, b) -> a.key.compareTo(b.key));
+        synchronized (lock) {
+            snapshot = snapshot.merge(entries);
+        }
+    }
+
+    /**
+     * Remove a choice by its name.
+     *
+     * @param name the choice name
+     * @return whether a choice was removed
+     */
+    public boolean remove(String name) {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            Snapshot updated = current.without(fold(name));
+            snapshot = updated;
+            return updated != current;
+        }
+    }
+
+    /**
+     * Remove all choices.
+     */
+    public void clear() {
+        synchronized (lock) {
+            snapshot = EMPTY;
+        }
+    }
+
+    /**
+     * Get the number of choices in the index.
+     *
+     * @return the number of choices
+     */
+    public int size() {
+        return snapshot.keys.length;
+    }
+
+    /**
+     * Find the choices whose names start with the given text, ignoring case.
+     *
+     * At most {@link OptionData#MAX_CHOICES} choices are returned, in name order.
+     *
+     * @param prefix the text typed so far
+     * @return an unmodifiable view of the matching choices
+     */
+    public List<Command.Choice> complete(CharSequence prefix) {
+        Snapshot current = snapshot;
+        String[] keys = current.keys;
+        int from = lowerBound(keys, prefix);
+        int to = from;
+        while (to < keys.length && to - from < OptionData.MAX_CHOICES && startsWith(keys[to], prefix))
+            to++;
+        return current.view.subList(from, to);
+    }
+
+    /**
+     * Lower case a name one character at a time, the same way prefixes are compared, so keys don't depend on the
+     * default locale and always have the same length as the name.
+     */
+    private static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+
+    private static int lowerBound(String[] keys, CharSequence prefix) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(keys[mid], prefix) < 0)
+                low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int compare(String key, CharSequence prefix) {
+        int length = Math.min(key.length(), prefix.length());
+        for (int i = 0; i < length; i++) {
+            char a = key.charAt(i), b = Character.toLowerCase(prefix.charAt(i));
+            if (a != b)
+                return a - b;
+        }
+        return key.length() - prefix.length();
+    }
+
+    private static boolean startsWith(String key, CharSequence prefix) {
+        if (key.length() < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (key.charAt(i) != Character.toLowerCase(prefix.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private static class Snapshot {
+        private final String[] keys;
+        private final Command.Choice[] choices;
+        private final List<Command.Choice> view;
+
+        private Snapshot(String[] keys, Command.Choice[] choices) {
+            this.keys = keys;
+            this.choices = choices;
+            this.view = Collections.unmodifiableList(Arrays.asList(choices));
+        }
+
+        private Snapshot with(String key, Command.Choice choice) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                Command.Choice[] replaced = choices.clone();
+                replaced[index] = choice;
+                return new Snapshot(keys, replaced);
+            }
+
+            int insert = -(index + 1);
+            String[] newKeys = new String[keys.length + 1];
+            Command.Choice[] newChoices = new Command.Choice[choices.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(choices, 0, newChoices, 0, insert);
+            newKeys[insert] = key;
+            newChoices[insert] = choice;
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(choices, insert, newChoices, insert + 1, choices.length - insert);
+            return new Snapshot(newKeys, newChoices);
+        }
+
+        /**
+         * Merge entries sorted by key into this snapshot in a single pass, replacing existing entries with equal keys.
+         */
+        private Snapshot merge(Entry[] entries) {
+            String[] newKeys = new String[keys.length + entries.length];
+            Command.Choice[] newChoices = new Command.Choice[choices.length + entries.length];
+            int i = 0, j = 0, size = 0;
+            while (i < keys.length || j < entries.length) {
+                // Skip to the last of several entries with the same key.
+                while (j + 1 < entries.length && entries[j].key.equals(entries[j + 1].key))
+                    j++;
+                int order = i == keys.length ? 1 : j == entries.length ? -1 : keys[i].compareTo(entries[j].key);
+                if (order < 0) {
+                    newKeys[size] = keys[i];
+                    newChoices[size++] = choices[i++];
+                } else {
+                    if (order == 0)
+                        i++;
+                    newKeys[size] = entries[j].key;
+                    newChoices[size++] = entries[j++].choice;
+                }
+            }
+            if (size < newKeys.length) {
+                newKeys = Arrays.copyOf(newKeys, size);
+                newChoices = Arrays.copyOf(newChoices, size);
+            }
+            return new Snapshot(newKeys, newChoices);
+        }
+
+        private Snapshot without(String key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0)
+                return this;
+
+            String[] newKeys = new String[keys.length - 1];
+            Command.Choice[] newChoices = new Command.Choice[choices.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(choices, 0, newChoices, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(choices, index + 1, newChoices, index, choices.length - index - 1);
+            return new Snapshot(newKeys, newChoices);
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final Command.Choice choice;
+
+        private Entry(String key, Command.Choice choice) {
+            this.key = key;
+            this.choice = choice;
+        }
+    }
+}
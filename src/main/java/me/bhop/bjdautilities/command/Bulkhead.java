@@ -0,0 +1,73 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Limits how many invocations of a single command run at once.
+ *
+ * Invocations past the limit wait in a bounded queue owned by the command rather than on a pool thread, and are
+ * handed to the executor as permits are released. Once the queue is full as well, invocations are rejected.
+ */
+final class Bulkhead {
+    private final Semaphore permits;
+    private final int queueCapacity;
+    private final Consumer<Runnable> executor;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param maxConcurrency the maximum number of running invocations
+     * @param queueCapacity the maximum number of waiting invocations
+     * @param executor runs invocations taken from the queue, which already hold a permit
+     */
+    Bulkhead(int maxConcurrency, int queueCapacity, Consumer<Runnable> executor) {
+        this.permits = new Semaphore(maxConcurrency);
+        this.queueCapacity = queueCapacity;
+        this.executor = executor;
+    }
+
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Queue an invocation which could not acquire a permit. It is run with a permit which it has to
+     * {@link #release()} once done.
+     *
+     * @return false if the queue is full
+     */
+    boolean enqueue(Runnable task) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            return false;
+        }
+        queue.add(task);
+        // A permit may have been released before the task was queued.
+        drain();
+        return true;
+    }
+
+    void release() {
+        permits.release();
+        drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                permits.release();
+                // Taken by another thread between the check and the poll, which may have left a permit unused.
+                if (queue.isEmpty())
+                    return;
+                continue;
+            }
+            queued.decrementAndGet();
+            executor.accept(task);
+        }
+    }
+}
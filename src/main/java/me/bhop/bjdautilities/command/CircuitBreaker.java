@@ -0,0 +1,128 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops commands from running while something they depend on keeps failing.
+ *
+ * The breaker starts closed and opens after a number of consecutive failed executions. While open, invocations
+ * are rejected right away. Once the cool-down has passed, a single invocation is let through as a probe: if it
+ * succeeds the breaker closes again, otherwise it stays open for another cool-down.
+ *
+ * A breaker is either declared by a single command, see
+ * {@link me.bhop.bjdautilities.command.annotation.Command#failureThreshold()}, or registered on the handler under
+ * a name and shared by every command naming it, see {@link CommandHandler.Builder#addCircuitBreaker(String, CircuitBreaker)}.
+ */
+public final class CircuitBreaker {
+    private final int failureThreshold;
+    private final long coolDown;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long openedAt = 0;
+
+    /**
+     * Create a new circuit breaker.
+     *
+     * @param failureThreshold the number of consecutive failures which open the breaker
+     * @param coolDown how long the breaker stays open before a probe is let through
+     * @param unit the unit of the cool-down
+     */
+    public CircuitBreaker(int failureThreshold, long coolDown, TimeUnit unit) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("The failure threshold must be at least 1!");
+        if (coolDown < 0)
+            throw new IllegalArgumentException("The cool-down cannot be negative!");
+        this.failureThreshold = failureThreshold;
+        this.coolDown = unit.toNanos(coolDown);
+    }
+
+    /**
+     * Check whether an invocation may run. If this lets a probe through, its outcome decides whether the breaker
+     * closes.
+     *
+     * @return true if the invocation may run
+     */
+    boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED)
+            return true;
+        return current == State.OPEN && System.nanoTime() - openedAt >= coolDown && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Give back an acquired invocation which was never run, so a probe which did not happen does not keep the
+     * breaker half open.
+     */
+    void release() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    void succeeded() {
+        if (failures.get() != 0)
+            failures.set(0);
+        if (state.get() == State.HALF_OPEN)
+            state.compareAndSet(State.HALF_OPEN, State.CLOSED);
+    }
+
+    void failed() {
+        long now = System.nanoTime();
+        if (state.get() == State.HALF_OPEN) {
+            openedAt = now;
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+            return;
+        }
+        if (failures.incrementAndGet() >= failureThreshold && state.get() == State.CLOSED) {
+            openedAt = now;
+            if (state.compareAndSet(State.CLOSED, State.OPEN))
+                failures.set(0);
+        }
+    }
+
+    /**
+     * Get the current state of this breaker.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Get the number of consecutive failures which open this breaker.
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Get how long this breaker stays open before a probe is let through.
+     *
+     * @param unit the unit to return the cool-down in
+     * @return the cool-down
+     */
+    public long getCoolDown(TimeUnit unit) {
+        return unit.convert(coolDown, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The states of a {@link CircuitBreaker}.
+     */
+    public enum State {
+        /**
+         * Invocations run normally.
+         */
+        CLOSED,
+        /**
+         * Invocations are rejected until the cool-down has passed.
+         */
+        OPEN,
+        /**
+         * A probe is running, other invocations are rejected until it finishes.
+         */
+        HALF_OPEN
+    }
+}
@@ -1,58 +1,191 @@
 package me.bhop.bjdautilities.command;
 
 import me.bhop.bjdautilities.Messenger;
+import me.bhop.bjdautilities.command.annotation.Command;
 import me.bhop.bjdautilities.command.handler.GuildDependentCommandHandler;
 import me.bhop.bjdautilities.command.handler.GuildIndependentCommandHandler;
 import me.bhop.bjdautilities.command.provided.HelpCommand;
 import me.bhop.bjdautilities.command.response.CommandResponses;
 import me.bhop.bjdautilities.command.response.DefaultCommandResponses;
 import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.exception.CommandInitException;
+import me.bhop.bjdautilities.metrics.LibraryMetrics;
+import me.bhop.bjdautilities.metrics.jfr.FlightEvents;
+import me.bhop.bjdautilities.util.DuplicateWindow;
+import me.bhop.bjdautilities.util.ErrorReporter;
+import me.bhop.bjdautilities.util.RecentIdSet;
+import me.bhop.bjdautilities.util.ShardGroup;
 import me.bhop.bjdautilities.util.ThrowingRunnable;
 import me.bhop.bjdautilities.util.TriConsumer;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
  * The base for both the {@link GuildDependentCommandHandler} and {@link GuildIndependentCommandHandler}.
+ *
+ * A single handler may be registered across every shard of a bot by creating its {@link Builder} from a
+ * {@link ShardManager} or several {@link JDA} instances. All shards then share the same command tree and
+ * execution pool.
  */
 public abstract class CommandHandler extends ListenerAdapter {
     private static final Messenger messenger = new Messenger();
-    private static final ExecutorService commandExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final ThreadPoolExecutor commandExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(POOL_SIZE, PoolThread::new);
+    // Pool threads stuck in an abandoned execution, guarded by commandExecutor.
+    private static int abandonedThreads = 0;
+    // Only available on Java 21 and later, VIRTUAL commands run on the command executor otherwise.
+    private static final ExecutorService virtualExecutor = createVirtualExecutor();
+    private static final int DEDUPE_CAPACITY = 4096;
+    // Returned by invoke when an execution was abandoned after its timeout.
+    private static final CommandResult TIMED_OUT = new CommandResult() { };
+
+    static {
+        LibraryMetrics.registerExecutor("command", commandExecutor);
+    }
 
     private final boolean concurrent;
+    private final boolean deleteCommands;
+    private final boolean resourceAccounting;
     private final CommandResponses responses;
     private final Set<LoadedCommand> commands;
     private final List<Object> params;
     private final Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results;
+    private final ShardGroup shards;
+    private final ShardStatistics statistics;
+    private final List<BiConsumer<String, String>> prefixListeners = new CopyOnWriteArrayList<>();
+    // Set once a CompositeCommandHandler routes the messages of this handler.
+    private volatile boolean composed = false;
+
+    // Ids of recently dispatched messages, null if deduplication is disabled.
+    private final RecentIdSet dispatchedIds;
+    // Recent (user, command, arguments) invocations, null if no duplicate window is set.
+    private final DuplicateWindow invocations;
+
+    private final LongAdder unknownCommands = new LongAdder();
+
+    // Hands dispatched messages to dedicated workers, null if the ring buffer engine is disabled.
+    private final DispatchRing ring;
+
+    // Tracks running executions, reports slow ones and abandons those past their timeout.
+    private final CommandWatchdog watchdog;
+    private final long defaultTimeout;
+    private final long inlineBudget;
+
+    private final Map<String, CircuitBreaker> circuitBreakers;
+    // The response to invocations rejected by a circuit breaker, compiled on first use.
+    private volatile Message unavailable;
+    private final ResponseCache responseCache;
+
+    // Root labels mapped to their command, replaced as a whole whenever the tree changes.
+    private volatile Map<String, LoadedCommand> labels = Collections.emptyMap();
+    // Every command keyed by its path of primary labels, replaced together with the labels.
+    private volatile Map<String, LoadedCommand> paths = Collections.emptyMap();
 
     /**
      * Use the {@link Builder}.
      */
+    protected CommandHandler(Builder builder) {
+        this.concurrent = builder.concurrent;
+        this.deleteCommands = builder.deleteCommands;
+        this.resourceAccounting = builder.resourceAccounting;
+        this.responses = builder.responses;
+        this.commands = new HashSet<>();
+        this.params = new ArrayList<>(builder.customParams);
+        this.results = new HashMap<>(builder.results);
+        this.shards = builder.shards;
+        this.statistics = new ShardStatistics(shards.getShardCount());
+        this.dispatchedIds = builder.deduplicate ? new RecentIdSet(DEDUPE_CAPACITY) : null;
+        this.invocations = builder.duplicateWindow > 0 ? new DuplicateWindow(DEDUPE_CAPACITY, builder.duplicateWindow, TimeUnit.MILLISECONDS) : null;
+        this.ring = builder.ringCapacity > 0 ? new DispatchRing(this, builder.ringCapacity, builder.ringWorkers, builder.waitStrategy) : null;
+        this.watchdog = new CommandWatchdog(builder.slowCommandThreshold, builder.slowCommandSink, builder.slowCommandReports, this::timedOut);
+        this.defaultTimeout = builder.defaultTimeout;
+        this.inlineBudget = builder.inlineBudget;
+        this.circuitBreakers = new HashMap<>(builder.circuitBreakers);
+        this.responseCache = new ResponseCache(builder.responseCacheSize);
+        if (defaultTimeout > 0)
+            watchdog.watch(defaultTimeout);
+
+        if (builder.help)
+            commands.add(LoadedCommand.create(new HelpCommand(builder.entriesPerPage, this::getPrefix, builder.helpPermissions), Collections.singletonList((Supplier<Set<LoadedCommand>>) this::getCommandsRecursive)));
+        rebuildLabels();
+
+        shards.addEventListener(this);
+    }
+
+    /**
+     * Create a handler for a single {@link JDA} instance.
+     *
+     * @deprecated use the {@link Builder}
+     */
+    @Deprecated
     protected CommandHandler(JDA jda, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
-        this.concurrent = concurrent;
-        this.responses = responses;
-        this.commands = commands;
-        this.params = params;
-        this.results = results;
+        this(ShardGroup.of(jda), concurrent, responses, commands, params, results, help, entriesPerPage, helpPermissions);
+    }
 
-        if (help)
-            commands.add(LoadedCommand.create(new HelpCommand(entriesPerPage, this::getPrefix, helpPermissions), Collections.singletonList((Supplier<Set<LoadedCommand>>) this::getCommandsRecursive)));
+    /**
+     * Create a handler for a group of shards.
+     *
+     * @deprecated use the {@link Builder}
+     */
+    @Deprecated
+    protected CommandHandler(ShardGroup shards, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
+        this(legacyBuilder(shards, concurrent, responses, params, results, help, entriesPerPage, helpPermissions));
+        adopt(commands);
+    }
 
-        jda.addEventListener(this);
+    /**
+     * Create a builder from the arguments of the deprecated constructors, which predate the {@link Builder}.
+     */
+    protected static Builder legacyBuilder(ShardGroup shards, boolean concurrent, CommandResponses responses, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
+        Builder builder = new Builder(shards).setConcurrent(concurrent).setResponses(responses).setGenerateHelp(help).setEntriesPerHelpPage(entriesPerPage).setUsePermissionsInHelp(helpPermissions);
+        builder.customParams.addAll(params);
+        builder.results.putAll(results);
+        return builder;
     }
 
     @Override
     public void onMessageReceived(final MessageReceivedEvent event) {
+        statistics.received(shards.getShardId(event.getJDA()));
+        if (composed)
+            return;
         if (!event.isFromGuild())
             return;
+        if(event.isWebhookMessage())
+            return;
+        if (event.getAuthor().isBot())
+            return;
+        String content = event.getMessage().getContentRaw();
+        String prefix = getPrefix(event.getGuild());
+        if (!content.startsWith(prefix) || content.length() <= prefix.length())
+            return;
+
+        dispatch(event, prefix, tokenize(content));
+    }
 
+    /**
+     * Dispatch a message which has passed the guild, webhook, bot and prefix checks.
+     *
+     * @param event the message event
+     * @param prefix the prefix the message starts with
+     * @param tokens the message content split on spaces, including the prefixed label
+     */
+    void dispatch(final MessageReceivedEvent event, String prefix, String[] tokens) {
+        Object accept = FlightEvents.beginPhase();
         Guild guild = event.getGuild();
         Message message = event.getMessage();
         Member member = event.getMember();
@@ -60,68 +193,513 @@ public abstract class CommandHandler extends ListenerAdapter {
 
         int responseLifetime = (int) getResponseLifespan(guild);
 
-        if (!getAllowedCommandChannels(guild).isEmpty() &&
-                !getAllowedCommandChannels(guild).contains(channel.getIdLong()))
+        if (!isAllowedChannel(getAllowedCommandChannels(guild), channel.getIdLong()))
             return;
-        if(event.isWebhookMessage())
+
+        // Events replayed after a resume carry the same message id, double sends the same author and content.
+        if (dispatchedIds != null && !dispatchedIds.add(message.getIdLong()))
             return;
-        if (event.getAuthor().isBot())
+        if (invocations != null && !invocations.accept(invocationKey(event.getAuthor().getIdLong(), tokens)))
+            return;
+
+        statistics.dispatched(shards.getShardId(event.getJDA()));
+        if (deleteCommands)
+            messenger.delete(message, (int) getCommandLifespan(guild));
+        FlightEvents.commitPhase(accept, "accept", guild.getIdLong(), null, message.getIdLong());
+
+        Object lookup = FlightEvents.beginPhase();
+        String label = tokens.length == 0 || tokens[0].length() < prefix.length() ? null : tokens[0].substring(prefix.length());
+        LoadedCommand cmd = label == null ? null : labels.get(label.toLowerCase());
+        FlightEvents.commitPhase(lookup, "lookup", guild.getIdLong(), label, message.getIdLong());
+
+        long queued = System.nanoTime();
+        Object queue = FlightEvents.beginPhase();
+        Command.Mode mode = cmd == null ? Command.Mode.POOL : cmd.getEffectiveMode();
+        if (mode == Command.Mode.POOL && concurrent && ring != null && ring.publish(event, prefix, tokens, label, cmd, member, responseLifetime, queued, queue))
             return;
-        String prefix = getPrefix(guild);
-        if (!event.getMessage().getContentRaw().startsWith(prefix) || event.getMessage().getContentRaw().length() <= prefix.length())
+
+        if (mode == Command.Mode.INLINE || !concurrent) {
+            // Executions on the event thread are not wrapped in a task.
+            try {
+                executeQueued(event, prefix, tokens, label, cmd, member, responseLifetime, queued, queue);
+            } catch (Exception e) {
+                ErrorReporter.report("task", e);
+            }
             return;
+        }
+
+        ThrowingRunnable run = new ThrowingRunnable(() -> executeQueued(event, prefix, tokens, label, cmd, member, responseLifetime, queued, queue));
+        if (mode == Command.Mode.VIRTUAL && virtualExecutor != null)
+            virtualExecutor.execute(run);
+        else submit(run);
+    }
+
+    /**
+     * Split the content of a message on spaces, the same way as {@code content.split(" ")}.
+     */
+    static String[] tokenize(String content) {
+        int end = content.length();
+        while (end > 0 && content.charAt(end - 1) == ' ')
+            end--;
+        if (end == content.length() && content.indexOf(' ') < 0)
+            return new String[] {content};
+
+        int count = end == 0 ? 0 : 1;
+        for (int i = 0; i < end; i++) {
+            if (content.charAt(i) == ' ')
+                count++;
+        }
+        String[] tokens = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int space = content.indexOf(' ', start);
+            int stop = space < 0 || space > end ? end : space;
+            tokens[i] = content.substring(start, stop);
+            start = stop + 1;
+        }
+        return tokens;
+    }
+
+    private static boolean isAllowedChannel(List<Long> allowed, long channel) {
+        if (allowed.isEmpty())
+            return true;
+        // Compared by value, so the channel id is not boxed.
+        for (int i = 0; i < allowed.size(); i++) {
+            if (allowed.get(i) == channel)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Execute a dispatched message on whichever thread it was handed off to.
+     *
+     * @param queue the flight event of the hand-off, may be null
+     */
+    void executeQueued(MessageReceivedEvent event, String prefix, String[] tokens, String label, LoadedCommand cmd, Member member, int responseLifetime, long queued, Object queue) {
+        long trace = event.getMessageIdLong();
+        FlightEvents.commitPhase(queue, "queue", event.getGuild().getIdLong(), null, trace);
+        FlightEvents.setTrace(trace);
+        try {
+            execute(event, prefix, tokens, label, cmd, member, responseLifetime, queued);
+        } finally {
+            FlightEvents.setTrace(0);
+        }
+    }
+
+    private void execute(MessageReceivedEvent event, String prefix, String[] tokens, String label, LoadedCommand cmd, Member member, int responseLifetime, long queued) {
+        long started = System.nanoTime();
+        Guild guild = event.getGuild();
+        Message message = event.getMessage();
+        TextChannel channel = (TextChannel) event.getChannel();
+        long guildId = guild.getIdLong();
+        long trace = message.getIdLong();
+
+        if (cmd == null) {
+            unknownCommands.increment();
+            Message m = responses.unknownCommand(message, prefix);
+            if (m != null)
+                sendCommandReply(guild, message, m, responseLifetime);
+            return;
+        }
+
+        cmd.getMetrics().queued(started - queued);
+        List<String> args = new ArgumentList(tokens, 1);
+
+        Object phase = FlightEvents.beginPhase();
+        boolean permitted = cmd.isPermitted(member);
+        FlightEvents.commitPhase(phase, "permission", guildId, label, trace);
+        if (!permitted) {
+            cmd.getMetrics().permissionDenied();
+            sendCommandReply(guild, message, responses.noPerms(message, cmd.getPermission()), responseLifetime);
+            return;
+        }
+
+        if (cmd.getMinArgs() > args.size()) {
+            cmd.getMetrics().invalidArguments();
+            sendCommandReply(guild, message, responses.notEnoughArguments(message, cmd.getMinArgs(), args), responseLifetime);
+            return;
+        }
+
+        executeBounded(cmd, member, channel, message, label, args, guildId, trace, null, null);
+    }
+
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hash an invocation by its sender and tokens. Each token gets its own 64 bit hash, since String#hashCode
+     * collides on short arguments (e.g. {@code Aa} and {@code BB}), and the token count is mixed in first.
+     */
+    private static long invocationKey(long user, String[] tokens) {
+        long key = user * 0x9E3779B97F4A7C15L + tokens.length;
+        for (String token : tokens)
+            key = (key ^ hash64(token)) * 0xBF58476D1CE4E5B9L;
+        return key;
+    }
 
-        messenger.delete(event.getMessage(), (int) getCommandLifespan(guild));
+    // 64 bit FNV-1a over the chars of a token.
+    private static long hash64(String token) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < token.length(); i++)
+            hash = (hash ^ token.charAt(i)) * 0x100000001B3L;
+        return hash;
+    }
 
-        ThrowingRunnable run = new ThrowingRunnable(() -> {
-            List<String> args = new ArrayList<>(Arrays.asList(event.getMessage().getContentRaw().split(" ")));
-            if (args.isEmpty() || (args.size() == 1 && args.get(0).trim().isEmpty())) {
-                sendCommandReply(guild, message, responses.unknownCommand(message, prefix), responseLifetime);
+    /**
+     * Execute a root command which has passed its permission and argument checks and handle its result, within the
+     * limits of its {@link Bulkhead} if it has one.
+     *
+     * This is shared between message and interaction dispatch. If the command has to wait for a permit, it is
+     * executed later on the command executor and this returns right away.
+     *
+     * @param reply how to respond, or null to reply to the message
+     * @param done run once the command has finished or been rejected, may be null
+     */
+    void executeBounded(LoadedCommand cmd, Member sender, TextChannel channel, Message message, String label, List<String> args, long guildId, long trace, Consumer<Message> reply, Runnable done) {
+        ResponseCache.Key key = null;
+        if (cmd.isCacheable()) {
+            key = cmd.cacheKey(guildId, channel.getIdLong(), args);
+            CommandResult cached = responseCache.get(key);
+            if (cached != null) {
+                cmd.getMetrics().cacheHit();
+                try {
+                    handleResult(cached, cmd, sender, channel, message, label, args, reply);
+                } finally {
+                    if (done != null)
+                        done.run();
+                }
                 return;
             }
+        }
 
-            String label = args.get(0).substring(1);
-            args.remove(0);
-
-            Optional<LoadedCommand> opt = commands.stream()
-                    .filter(cmd -> cmd.getLabels().contains(label.toLowerCase()))
-                    .findFirst();
-            if (!opt.isPresent()) {
-                Message m = responses.unknownCommand(message, prefix);
+        CircuitBreaker breaker = cmd.circuitBreaker;
+        if (breaker != null && !breaker.tryAcquire()) {
+            cmd.getMetrics().shortCircuited();
+            try {
+                Message m = unavailable;
+                if (m == null)
+                    unavailable = m = responses.unavailable();
                 if (m != null)
-                    sendCommandReply(guild, message, m, responseLifetime);
-                return;
+                    reply(reply, message, m);
+            } finally {
+                if (done != null)
+                    done.run();
             }
+            return;
+        }
 
-            LoadedCommand cmd = opt.get();
-            if (!member.hasPermission(cmd.getPermission())) {
-                sendCommandReply(guild, message, responses.noPerms(message, cmd.getPermission()), responseLifetime);
+        Bulkhead bulkhead = cmd.bulkhead;
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            ResponseCache.Key cacheKey = key;
+            boolean queued = bulkhead.enqueue(new ThrowingRunnable(() -> {
+                FlightEvents.setTrace(trace);
+                try {
+                    complete(cmd, sender, channel, message, label, args, guildId, trace, reply, bulkhead, cacheKey, done);
+                } finally {
+                    FlightEvents.setTrace(0);
+                }
+            }));
+            if (queued)
                 return;
+            if (breaker != null)
+                breaker.release();
+            cmd.getMetrics().rejected();
+            try {
+                Message m = responses.busy(message);
+                if (m != null)
+                    reply(reply, message, m);
+            } finally {
+                if (done != null)
+                    done.run();
             }
+            return;
+        }
+        complete(cmd, sender, channel, message, label, args, guildId, trace, reply, bulkhead, key, done);
+    }
 
-            if (cmd.getMinArgs() > args.size()) {
-                sendCommandReply(guild, message, responses.notEnoughArguments(message, cmd.getMinArgs(), args), responseLifetime);
-                return;
+    /**
+     * Run a command which holds its bulkhead permit, if it has a bulkhead, feed the outcome to its circuit breaker
+     * and cache the result under the given key, if it is not null.
+     */
+    private void complete(LoadedCommand cmd, Member sender, TextChannel channel, Message message, String label, List<String> args, long guildId, long trace, Consumer<Message> reply, Bulkhead bulkhead, ResponseCache.Key key, Runnable done) {
+        CircuitBreaker breaker = cmd.circuitBreaker;
+        boolean succeeded = false;
+        try {
+            Object phase = FlightEvents.beginPhase();
+            CommandResult result;
+            try {
+                result = invoke(cmd, sender, channel, message, label, args, guildId, trace, reply);
+                succeeded = result != null && result != TIMED_OUT;
+            } finally {
+                if (breaker != null) {
+                    if (succeeded)
+                        breaker.succeeded();
+                    else breaker.failed();
+                }
+            }
+            FlightEvents.commitPhase(phase, "invoke", guildId, label, trace);
+            // Any other result carries no response, so a cached copy would leave later invocations unanswered.
+            if (key != null && result instanceof CommandResult.Reply)
+                responseCache.put(key, result, cmd.getCacheTtl());
+
+            phase = FlightEvents.beginPhase();
+            handleResult(result, cmd, sender, channel, message, label, args, reply);
+            FlightEvents.commitPhase(phase, "result", guildId, label, trace);
+        } finally {
+            if (bulkhead != null)
+                bulkhead.release();
+            if (done != null)
+                done.run();
+        }
+    }
+
+    /**
+     * Execute a root command, tracked by the watchdog if it is active.
+     *
+     * If the command times out, the sender has already been replied to and the returned result is ignored by
+     * {@link #handleResult}.
+     */
+    private CommandResult invoke(LoadedCommand cmd, Member sender, TextChannel channel, Message message, String label, List<String> args, long guildId, long trace, Consumer<Message> reply) {
+        if (!watchdog.isActive())
+            return cmd.execute(sender, channel, message, label, args, reply);
+        long timeout = cmd.getTimeout() < 0 ? defaultTimeout : TimeUnit.MILLISECONDS.toNanos(cmd.getTimeout());
+        boolean pooled = Thread.currentThread() instanceof PoolThread;
+        // Inline commands run on the event thread, which is only available to them within the inline budget.
+        boolean inline = concurrent && !pooled && cmd.getEffectiveMode() == Command.Mode.INLINE;
+        if (inline)
+            timeout = timeout > 0 ? Math.min(timeout, inlineBudget) : inlineBudget;
+        CommandWatchdog.Execution execution = watchdog.begin(cmd, label, guildId, trace, message, reply, timeout, pooled);
+        CommandResult result = null;
+        try {
+            result = cmd.execute(sender, channel, message, label, args, reply);
+        } finally {
+            if (!watchdog.end(execution)) {
+                if (pooled)
+                    resizePool(-1);
+                else if (Thread.currentThread() instanceof DispatchRing.Worker)
+                    ((DispatchRing.Worker) Thread.currentThread()).retire();
+                if (inline)
+                    cmd.demoted = true;
+                result = TIMED_OUT;
             }
+        }
+        return result;
+    }
+
+    /**
+     * Called on the watchdog thread once an execution has been interrupted and abandoned. The pool is grown by one
+     * thread until the abandoned execution returns, and a ring worker is replaced by a new one, so a stuck command
+     * cannot hold on to a pool slot or a worker. The reply is queued, so the watchdog is never blocked.
+     */
+    private void timedOut(CommandWatchdog.Execution execution) {
+        execution.command.getMetrics().timedOut();
+        if (execution.pooled)
+            resizePool(1);
+        else if (execution.getThread() instanceof DispatchRing.Worker)
+            ((DispatchRing.Worker) execution.getThread()).replace();
+        Message m = responses.timedOut(execution.message, TimeUnit.NANOSECONDS.toMillis(execution.timeout));
+        if (m == null)
+            return;
+        if (execution.reply != null) {
+            execution.reply.accept(m);
+            return;
+        }
+        Guild guild = execution.message.getGuild();
+        int responseLifetime = (int) getResponseLifespan(guild);
+        if (isSendResultsAsReplies(guild))
+            messenger.sendReplyMessage(execution.message, m, responseLifetime, isTagUserInReplies(guild), null);
+        else messenger.sendMessage(execution.message.getChannel(), m, responseLifetime, null);
+    }
 
-            CommandResult result = cmd.execute(member, channel, message, label, args);
-            if (result == null) {
-                sendCommandReply(guild, message, responses.unknownError(message), responseLifetime);
-            } else if (result instanceof CommandResult.NoPermission)
-                sendCommandReply(guild, message, responses.noPerms(message, cmd.getPermission()), responseLifetime);
-            else if (result instanceof CommandResult.InvalidArguments) {
-                if (cmd.hasUsage())
-                    cmd.usage(member, channel, message, label, args);
-                else sendCommandReply(guild, message, responses.usage(message, args, cmd.getUsageString()), responseLifetime);
-            } else if (!(result instanceof CommandResult.Success))
-                Optional.ofNullable(results.get(result.getClass())).ifPresent(r -> r.accept(result, cmd, message));
-        });
+    /**
+     * The threads of the command executor, so executions can tell whether they hold a pool slot.
+     */
+    private static final class PoolThread extends Thread {
+        private static final AtomicInteger count = new AtomicInteger();
+
+        private PoolThread(Runnable run) {
+            super(run, "bjda-command-" + count.incrementAndGet());
+        }
+    }
 
+    /**
+     * Count a pool thread as abandoned (1) or returned (-1). An abandoned execution may return before the watchdog
+     * has counted it, so the pool never shrinks below its base size in between.
+     */
+    private static void resizePool(int change) {
+        synchronized (commandExecutor) {
+            abandonedThreads += change;
+            int size = POOL_SIZE + Math.max(0, abandonedThreads);
+            if (size > commandExecutor.getMaximumPoolSize()) {
+                commandExecutor.setMaximumPoolSize(size);
+                commandExecutor.setCorePoolSize(size);
+            } else {
+                commandExecutor.setCorePoolSize(size);
+                commandExecutor.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /**
+     * Handle the result of a command execution, sending any responses through the supplied reply function.
+     *
+     * This is shared between message and interaction dispatch.
+     */
+    void handleResult(CommandResult result, LoadedCommand cmd, Member member, TextChannel channel, Message message, String label, List<String> args, Consumer<Message> reply) {
+        if (result == TIMED_OUT)
+            return;
+        if (result == null) {
+            reply(reply, message, responses.unknownError(message));
+        } else if (result instanceof CommandResult.Reply) {
+            Message m = ((CommandResult.Reply) result).getMessage();
+            if (m != null)
+                reply(reply, message, m);
+        } else if (result instanceof CommandResult.NoPermission) {
+            cmd.getMetrics().permissionDenied();
+            reply(reply, message, responses.noPerms(message, cmd.getPermission()));
+        }
+        else if (result instanceof CommandResult.InvalidArguments) {
+            // The command may have modified the list it was given.
+            List<String> original = args instanceof ArgumentList ? ((ArgumentList) args).original() : new ArrayList<>(args);
+            if (cmd.hasUsage())
+                cmd.usage(member, channel, message, label, original);
+            else reply(reply, message, responses.usage(message, original, cmd.getUsageString()));
+        } else if (!(result instanceof CommandResult.Success))
+            Optional.ofNullable(results.get(result.getClass())).ifPresent(r -> r.accept(result, cmd, message));
+    }
+
+    /**
+     * Run a dispatch task, either on the command executor or the calling thread.
+     */
+    void submit(Runnable run) {
         if (concurrent)
             commandExecutor.submit(run);
         else run.run();
     }
 
+    CommandResponses getResponses() {
+        return responses;
+    }
+
+    Set<LoadedCommand> getRootCommands() {
+        return Collections.unmodifiableSet(commands);
+    }
+
+    /**
+     * Get the shards which this handler is registered to.
+     *
+     * @return the shard group
+     */
+    public ShardGroup getShards() {
+        return shards;
+    }
+
+    /**
+     * Get the per shard dispatch counters of this handler.
+     *
+     * @return the shard statistics
+     */
+    public ShardStatistics getShardStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Take a snapshot of the metrics of this handler and every command registered to it.
+     *
+     * @return the metrics snapshot
+     */
+    public MetricsSnapshot snapshotMetrics() {
+        Map<String, CommandMetrics.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, LoadedCommand> entry : paths.entrySet())
+            snapshots.put(entry.getKey(), entry.getValue().getMetrics().snapshot());
+        return new MetricsSnapshot(unknownCommands.sum(), Collections.unmodifiableMap(snapshots));
+    }
+
+    /**
+     * Get the number of prefixed messages whose label did not match any command.
+     *
+     * @return the unknown command count
+     */
+    public long getUnknownCommands() {
+        return unknownCommands.sum();
+    }
+
+    /**
+     * Get every registered command, keyed by the primary labels of the command and its parents separated by
+     * spaces, e.g. {@code config set}. The map is sorted by path and is replaced as a whole when commands are
+     * registered.
+     *
+     * @return the commands by path
+     */
+    public Map<String, LoadedCommand> getCommandPaths() {
+        return paths;
+    }
+
+    /**
+     * Drop every cached command result.
+     */
+    public void invalidateCache() {
+        responseCache.invalidate(key -> true);
+    }
+
+    /**
+     * Drop the cached results of a {@link me.bhop.bjdautilities.command.annotation.Cacheable} command, e.g. after
+     * the data it shows has changed.
+     *
+     * @param command the command class
+     */
+    public void invalidateCache(Class<?> command) {
+        responseCache.invalidate(key -> key.command.getCommandClass() == command);
+    }
+
+    /**
+     * Drop the cached results of a {@link me.bhop.bjdautilities.command.annotation.Cacheable} command in a single
+     * guild. Results which are not cached by guild are dropped as well.
+     *
+     * @param command the command class
+     * @param guild the guild
+     */
+    public void invalidateCache(Class<?> command, Guild guild) {
+        long guildId = guild.getIdLong();
+        responseCache.invalidate(key -> key.command.getCommandClass() == command && (key.guild == 0 || key.guild == guildId));
+    }
+
+    /**
+     * Notify listeners that a prefix has been added to or removed from those returned by {@link #getKnownPrefixes()}.
+     *
+     * @param removed the prefix which is no longer in use, or null
+     * @param added the prefix which is newly in use, or null
+     */
+    protected void prefixChanged(String removed, String added) {
+        for (BiConsumer<String, String> listener : prefixListeners)
+            listener.accept(removed, added);
+    }
+
+    /**
+     * Hand the routing of messages to a {@link CompositeCommandHandler}. This handler stays registered on its shards,
+     * so it still counts received messages, but no longer dispatches on its own.
+     */
+    void compose(BiConsumer<String, String> prefixListener) {
+        prefixListeners.add(prefixListener);
+        composed = true;
+    }
+
+    /**
+     * Send a response through a reply function, or as a reply to the message which invoked the command if there is
+     * none. Message dispatch leaves the reply function out, so it does not have to be allocated for every command.
+     */
+    private void reply(Consumer<Message> reply, Message message, Message response) {
+        if (reply != null)
+            reply.accept(response);
+        else sendCommandReply(message.getGuild(), message, response, (int) getResponseLifespan(message.getGuild()));
+    }
+
     void sendCommandReply(Guild guild, Message replyTo, Message message, int responseLifetime) {
         if (isSendResultsAsReplies(guild)) {
             messenger.sendReplyMessage(replyTo, message, responseLifetime, isTagUserInReplies(guild));
@@ -131,6 +709,7 @@ public abstract class CommandHandler extends ListenerAdapter {
     }
 
     protected abstract String getPrefix(Guild guild);
+    protected abstract Collection<String> getKnownPrefixes();
     protected abstract long getCommandLifespan(Guild guild);
     protected abstract long getResponseLifespan(Guild guild);
     protected abstract List<Long> getAllowedCommandChannels(Guild guild);
@@ -159,31 +738,77 @@ public abstract class CommandHandler extends ListenerAdapter {
      *
      * @param cmds the command instance
      */
-    public void register(Object... cmds) {
-        for (Object command : cmds) {
-            LoadedCommand cmd = LoadedCommand.create(command, params);
-            cmd.sendMessage = (channel, message) -> messenger.sendMessage(channel, message, (int) getResponseLifespan(channel.getGuild()));
-            cmd.responses = this.responses;
-            boolean foundParent = false;
-            for (LoadedCommand all : getCommandsRecursive())
-                if (all.hasChild(cmd.getCommandClass()))
-                    foundParent = all.registerChild(cmd);
-
-            if (!foundParent)
-                commands.add(cmd);
-
-            Set<LoadedCommand> removals = new HashSet<>();
-            for (LoadedCommand c : commands) {
-                for (LoadedCommand all : getCommandsRecursive()) {
-                    if (all.getChildClasses().contains(c.getCommandClass())) {
-                        all.registerChild(c);
-                        removals.add(c);
-                    }
+    public synchronized void register(Object... cmds) {
+        for (Object command : cmds)
+            attach(LoadedCommand.create(command, params));
+        rebuildLabels();
+    }
+
+    /**
+     * Register commands which were loaded before this handler was created, e.g. those passed to a deprecated constructor.
+     *
+     * @param cmds the loaded commands
+     */
+    protected synchronized void adopt(Collection<LoadedCommand> cmds) {
+        for (LoadedCommand cmd : cmds)
+            attach(cmd);
+        rebuildLabels();
+    }
+
+    private void attach(LoadedCommand cmd) {
+        cmd.sendMessage = (channel, message) -> messenger.sendMessage(channel, message, (int) getResponseLifespan(channel.getGuild()));
+        cmd.responses = this.responses;
+        cmd.accountResources = resourceAccounting;
+        if (!cmd.getCircuit().isEmpty()) {
+            cmd.circuitBreaker = circuitBreakers.get(cmd.getCircuit());
+            if (cmd.circuitBreaker == null)
+                throw new CommandInitException(cmd.getCommandClass(), "No circuit breaker named '" + cmd.getCircuit() + "' has been added to the handler.");
+        }
+        if (cmd.getMaxConcurrency() > 0)
+            cmd.bulkhead = new Bulkhead(cmd.getMaxConcurrency(), cmd.getMaxQueued(), this::submit);
+        if (cmd.getTimeout() > 0)
+            watchdog.watch(TimeUnit.MILLISECONDS.toNanos(cmd.getTimeout()));
+        if (cmd.getMode() == Command.Mode.INLINE && concurrent)
+            watchdog.watch(inlineBudget);
+        boolean foundParent = false;
+        for (LoadedCommand all : getCommandsRecursive())
+            if (all.hasChild(cmd.getCommandClass()))
+                foundParent = all.registerChild(cmd);
+
+        if (!foundParent)
+            commands.add(cmd);
+
+        Set<LoadedCommand> removals = new HashSet<>();
+        for (LoadedCommand c : commands) {
+            for (LoadedCommand all : getCommandsRecursive()) {
+                if (all.getChildClasses().contains(c.getCommandClass())) {
+                    all.registerChild(c);
+                    removals.add(c);
                 }
             }
-            for (LoadedCommand removal : removals)
-                commands.remove(removal);
         }
+        for (LoadedCommand removal : removals)
+            commands.remove(removal);
+    }
+
+    private void rebuildLabels() {
+        Map<String, LoadedCommand> labels = new HashMap<>();
+        for (LoadedCommand cmd : commands)
+            for (String label : cmd.getLabels())
+                labels.putIfAbsent(label, cmd);
+        this.labels = Collections.unmodifiableMap(labels);
+
+        Map<String, LoadedCommand> paths = new TreeMap<>();
+        for (LoadedCommand cmd : commands)
+            addPaths(paths, "", cmd);
+        this.paths = Collections.unmodifiableMap(paths);
+    }
+
+    private static void addPaths(Map<String, LoadedCommand> paths, String parent, LoadedCommand cmd) {
+        String path = parent + cmd.getLabels().get(0);
+        paths.putIfAbsent(path, cmd);
+        for (LoadedCommand child : cmd.getChildren())
+            addPaths(paths, path + " ", child);
     }
 
     /**
@@ -201,7 +826,7 @@ public abstract class CommandHandler extends ListenerAdapter {
      *
      * @return all registered commands and their children
      */
-    public Set<LoadedCommand> getCommandsRecursive() {
+    public synchronized Set<LoadedCommand> getCommandsRecursive() {
         Set<LoadedCommand> all = new HashSet<>();
         for (LoadedCommand cmd : commands)
             all.addAll(cmd.getAllRecursive());
@@ -209,7 +834,7 @@ public abstract class CommandHandler extends ListenerAdapter {
     }
 
     public static class Builder {
-        private final JDA jda;
+        private final ShardGroup shards;
         private CommandResponses responses = new DefaultCommandResponses();
 
         // Custom Parameters
@@ -219,6 +844,20 @@ public abstract class CommandHandler extends ListenerAdapter {
 
         // Concurrent Execution
         private boolean concurrent = true;
+        private boolean deleteCommands = true;
+        private boolean deduplicate = true;
+        private boolean resourceAccounting = false;
+        private long duplicateWindow = 0;
+        private long slowCommandThreshold = 0;
+        private SlowCommandSink slowCommandSink = SlowCommandSink.stderr();
+        private int slowCommandReports = 10;
+        private long defaultTimeout = 0;
+        private long inlineBudget = TimeUnit.MILLISECONDS.toNanos(100);
+        private int ringCapacity = 0;
+        private int ringWorkers = 0;
+        private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+        private final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+        private long responseCacheSize = 1 << 20;
 
         private boolean help = true;
         private int entriesPerPage = 5;
@@ -230,7 +869,34 @@ public abstract class CommandHandler extends ListenerAdapter {
          * @param jda the {@link JDA} instance
          */
         public Builder(JDA jda) {
-            this.jda = jda;
+            this(ShardGroup.of(jda));
+        }
+
+        /**
+         * Create a new builder instance for a handler shared by every shard of a {@link ShardManager}.
+         *
+         * @param shardManager the {@link ShardManager} instance
+         */
+        public Builder(ShardManager shardManager) {
+            this(ShardGroup.of(shardManager));
+        }
+
+        /**
+         * Create a new builder instance for a handler shared by several {@link JDA} instances.
+         *
+         * @param shards the {@link JDA} instances
+         */
+        public Builder(Collection<JDA> shards) {
+            this(ShardGroup.of(shards));
+        }
+
+        /**
+         * Create a new builder instance for a handler shared by a group of shards.
+         *
+         * @param shards the shard group
+         */
+        public Builder(ShardGroup shards) {
+            this.shards = shards;
         }
 
         /**
@@ -276,6 +942,33 @@ public abstract class CommandHandler extends ListenerAdapter {
             return this;
         }
 
+        /**
+         * Add a circuit breaker which commands can share by naming it in
+         * {@link me.bhop.bjdautilities.command.annotation.Command#circuit()}, e.g. one for every command which
+         * depends on the same custom parameter.
+         *
+         * @param name the name of the circuit
+         * @param breaker the circuit breaker
+         */
+        public Builder addCircuitBreaker(String name, CircuitBreaker breaker) {
+            circuitBreakers.put(Objects.requireNonNull(name), Objects.requireNonNull(breaker));
+            return this;
+        }
+
+        /**
+         * Set the maximum estimated size of the results cached for
+         * {@link me.bhop.bjdautilities.command.annotation.Cacheable} commands. The size of a result is estimated
+         * from the text of its response. The least recently used results are evicted once the cache is full.
+         *
+         * @param bytes the maximum size in bytes
+         */
+        public Builder setResponseCacheSize(long bytes) {
+            if (bytes < 0)
+                throw new IllegalArgumentException("The response cache size cannot be negative!");
+            this.responseCacheSize = bytes;
+            return this;
+        }
+
         /**
          * Set whether the handler should execute commands concurrently.
          *
@@ -286,6 +979,152 @@ public abstract class CommandHandler extends ListenerAdapter {
             return this;
         }
 
+        /**
+         * Set whether the messages which invoke commands should be deleted once their command lifespan has passed.
+         *
+         * @param deleteCommands whether to delete command messages
+         */
+        public Builder setDeleteCommands(boolean deleteCommands) {
+            this.deleteCommands = deleteCommands;
+            return this;
+        }
+
+        /**
+         * Set whether messages which have already been dispatched should be ignored, e.g. when the gateway replays
+         * events after a resume. Recently dispatched message ids are kept in a fixed size set.
+         *
+         * @param deduplicate whether to ignore already dispatched messages
+         */
+        public Builder setDeduplicateMessages(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+            return this;
+        }
+
+        /**
+         * Set a window in which identical invocations by the same user are collapsed into one. An invocation is
+         * identical if it has the same label and arguments. A window of 0 disables this.
+         *
+         * @param window the window length
+         * @param unit the unit of the window length
+         */
+        public Builder setDuplicateWindow(long window, TimeUnit unit) {
+            if (window < 0)
+                throw new IllegalArgumentException("The duplicate window cannot be negative!");
+            this.duplicateWindow = unit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * Execute {@link Command.Mode#POOL} commands on dedicated workers fed through a preallocated ring buffer
+         * instead of the shared command executor.
+         *
+         * Handing a message to the ring allocates nothing and takes no locks, so the cost of a hand-off stays flat
+         * during bursts. If the ring is full, messages fall back to the command executor. The workers belong to
+         * this handler and run for as long as the application does.
+         *
+         * @param capacity the number of slots in the ring, a power of two
+         * @param workers the number of worker threads
+         * @param waitStrategy how idle workers wait for messages
+         */
+        public Builder setRingBuffer(int capacity, int workers, WaitStrategy waitStrategy) {
+            if (capacity < 2 || Integer.bitCount(capacity) != 1)
+                throw new IllegalArgumentException("The ring buffer capacity must be a power of two!");
+            if (workers < 1)
+                throw new IllegalArgumentException("The ring buffer needs at least 1 worker!");
+            this.ringCapacity = capacity;
+            this.ringWorkers = workers;
+            this.waitStrategy = Objects.requireNonNull(waitStrategy);
+            return this;
+        }
+
+        /**
+         * Set whether the CPU time and allocated bytes of every command execution should be accounted in the
+         * command's {@link CommandMetrics}.
+         *
+         * This reads the thread's CPU time and allocation counters before and after every execution, which costs a
+         * few hundred nanoseconds per command, so it is disabled by default.
+         *
+         * @param resourceAccounting whether to account resource usage
+         */
+        public Builder setResourceAccounting(boolean resourceAccounting) {
+            this.resourceAccounting = resourceAccounting;
+            return this;
+        }
+
+        /**
+         * Set how long a command may run before it is reported as slow. A threshold of 0 disables this.
+         *
+         * Running commands are checked by a watchdog thread. Once one passes the threshold, a few stack samples of
+         * the thread running it are taken and reported to the {@link SlowCommandSink}, see
+         * {@link #setSlowCommandSink(SlowCommandSink)} and {@link #setSlowCommandReportLimit(int)}.
+         *
+         * @param threshold the threshold
+         * @param unit the unit of the threshold
+         */
+        public Builder setSlowCommandThreshold(long threshold, TimeUnit unit) {
+            if (threshold < 0)
+                throw new IllegalArgumentException("The slow command threshold cannot be negative!");
+            this.slowCommandThreshold = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * Set how long commands may run before they are abandoned, unless they set their own
+         * {@link me.bhop.bjdautilities.command.annotation.Command#timeout()}. A timeout of 0 disables this.
+         *
+         * Once a command exceeds its timeout, the thread running it is interrupted, the sender is sent
+         * {@link CommandResponses#timedOut(Message, long)} and whatever the command returns afterwards is ignored.
+         * When executing concurrently, an extra pool thread is started until the command returns, so commands
+         * blocked on something which ignores interrupts cannot exhaust the pool.
+         *
+         * @param timeout the timeout
+         * @param unit the unit of the timeout
+         */
+        public Builder setDefaultTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0)
+                throw new IllegalArgumentException("The default timeout cannot be negative!");
+            this.defaultTimeout = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Set how long {@link Command.Mode#INLINE} commands may run on the event thread. A command which exceeds
+         * it is interrupted and timed out like any other, and runs on the command executor from then on.
+         *
+         * @param budget the inline budget
+         * @param unit the unit of the inline budget
+         */
+        public Builder setInlineBudget(long budget, TimeUnit unit) {
+            if (budget <= 0)
+                throw new IllegalArgumentException("The inline budget must be positive!");
+            this.inlineBudget = unit.toNanos(budget);
+            return this;
+        }
+
+        /**
+         * Set the sink which slow command reports are delivered to. By default they are printed to
+         * {@link System#err}.
+         *
+         * @param sink the sink
+         */
+        public Builder setSlowCommandSink(SlowCommandSink sink) {
+            this.slowCommandSink = Objects.requireNonNull(sink);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of slow commands reported per minute. Slow commands past the limit are not
+         * sampled, only counted in the next report.
+         *
+         * @param reportsPerMinute the report limit
+         */
+        public Builder setSlowCommandReportLimit(int reportsPerMinute) {
+            if (reportsPerMinute < 1)
+                throw new IllegalArgumentException("The slow command report limit must be at least 1!");
+            this.slowCommandReports = reportsPerMinute;
+            return this;
+        }
+
         /**
          * Set whether to automatically generate a help command based on the registered {@link me.bhop.bjdautilities.command.annotation.Command}s.
          * The help command will be generated using the {@link HelpCommand}.
@@ -315,11 +1154,11 @@ public abstract class CommandHandler extends ListenerAdapter {
         }
 
         public GuildIndependentCommandHandler.Builder guildIndependent() {
-            return new GuildIndependentCommandHandler.Builder(jda, concurrent, responses, new HashSet<>(), customParams, results, help, entriesPerPage, helpPermissions);
+            return new GuildIndependentCommandHandler.Builder(this);
         }
 
         public GuildDependentCommandHandler.Builder guildDependent() {
-            return new GuildDependentCommandHandler.Builder(jda, concurrent, responses, new HashSet<>(), customParams, results, help, entriesPerPage, helpPermissions);
+            return new GuildDependentCommandHandler.Builder(this);
         }
     }
 }
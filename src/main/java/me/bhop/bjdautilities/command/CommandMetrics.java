@@ -0,0 +1,332 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.metrics.HistogramSnapshot;
+import me.bhop.bjdautilities.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counters of a single {@link LoadedCommand}.
+ *
+ * Queue wait is the time between a message being accepted by the handler and the command starting to run on the
+ * command executor, execution is the time spent in the command's execute method.
+ *
+ * If resource accounting is enabled on the handler, the CPU time and bytes allocated by the thread running the
+ * execute method are added up as well, see {@link CommandHandler.Builder#setResourceAccounting(boolean)}.
+ */
+public final class CommandMetrics {
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+    private final LongAdder permissionDenials = new LongAdder();
+    private final LongAdder invalidArguments = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder accounted = new LongAdder();
+    private final LongAdder cpuTime = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    void queued(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    void executed(long nanos) {
+        execution.record(nanos);
+    }
+
+    void permissionDenied() {
+        permissionDenials.increment();
+    }
+
+    void invalidArguments() {
+        invalidArguments.increment();
+    }
+
+    void exception() {
+        exceptions.increment();
+    }
+
+    void timedOut() {
+        timeouts.increment();
+    }
+
+    void rejected() {
+        rejections.increment();
+    }
+
+    void shortCircuited() {
+        shortCircuits.increment();
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    void consumed(long cpuNanos, long bytes) {
+        accounted.increment();
+        if (cpuNanos > 0)
+            cpuTime.add(cpuNanos);
+        if (bytes > 0)
+            allocatedBytes.add(bytes);
+    }
+
+    /**
+     * Get the live queue wait histogram.
+     *
+     * @return the queue wait histogram
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Get the live execution histogram.
+     *
+     * @return the execution histogram
+     */
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+
+    /**
+     * Get the number of invocations rejected because the sender lacked permissions.
+     *
+     * @return the permission denial count
+     */
+    public long getPermissionDenials() {
+        return permissionDenials.sum();
+    }
+
+    /**
+     * Get the number of invocations with missing or invalid arguments.
+     *
+     * @return the invalid argument count
+     */
+    public long getInvalidArguments() {
+        return invalidArguments.sum();
+    }
+
+    /**
+     * Get the number of executions which threw an exception.
+     *
+     * @return the exception count
+     */
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    /**
+     * Get the number of executions which were abandoned after exceeding their timeout.
+     *
+     * @return the timeout count
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Get the number of invocations rejected because the command's concurrency and queue limits were reached.
+     *
+     * @return the rejection count
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Get the number of invocations rejected because the command's circuit breaker was open.
+     *
+     * @return the short circuit count
+     */
+    public long getShortCircuits() {
+        return shortCircuits.sum();
+    }
+
+    /**
+     * Get the number of invocations answered with a cached result.
+     *
+     * @return the cache hit count
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Get the number of executions whose resource usage has been accounted.
+     *
+     * @return the accounted execution count
+     */
+    public long getAccountedExecutions() {
+        return accounted.sum();
+    }
+
+    /**
+     * Get the CPU time used by accounted executions.
+     *
+     * @return the CPU time in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime.sum();
+    }
+
+    /**
+     * Get the bytes allocated by accounted executions.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Take a snapshot of these metrics.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(queueWait.snapshot(), execution.snapshot(), permissionDenials.sum(), invalidArguments.sum(), exceptions.sum(), timeouts.sum(), rejections.sum(), shortCircuits.sum(), cacheHits.sum(), accounted.sum(), cpuTime.sum(), allocatedBytes.sum());
+    }
+
+    /**
+     * An immutable copy of a command's metrics.
+     */
+    public static final class Snapshot {
+        private final HistogramSnapshot queueWait;
+        private final HistogramSnapshot execution;
+        private final long permissionDenials;
+        private final long invalidArguments;
+        private final long exceptions;
+        private final long timeouts;
+        private final long rejections;
+        private final long shortCircuits;
+        private final long cacheHits;
+        private final long accountedExecutions;
+        private final long cpuTime;
+        private final long allocatedBytes;
+
+        private Snapshot(HistogramSnapshot queueWait, HistogramSnapshot execution, long permissionDenials, long invalidArguments, long exceptions, long timeouts, long rejections, long shortCircuits, long cacheHits, long accountedExecutions, long cpuTime, long allocatedBytes) {
+            this.queueWait = queueWait;
+            this.execution = execution;
+            this.permissionDenials = permissionDenials;
+            this.invalidArguments = invalidArguments;
+            this.exceptions = exceptions;
+            this.timeouts = timeouts;
+            this.rejections = rejections;
+            this.shortCircuits = shortCircuits;
+            this.cacheHits = cacheHits;
+            this.accountedExecutions = accountedExecutions;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Get the time invocations of the command spent waiting for the command executor.
+         *
+         * @return the queue wait histogram
+         */
+        public HistogramSnapshot getQueueWait() {
+            return queueWait;
+        }
+
+        /**
+         * Get the time spent executing the command. Its count is the number of executions.
+         *
+         * @return the execution histogram
+         */
+        public HistogramSnapshot getExecution() {
+            return execution;
+        }
+
+        /**
+         * Get the number of invocations rejected because the sender lacked permissions.
+         *
+         * @return the permission denial count
+         */
+        public long getPermissionDenials() {
+            return permissionDenials;
+        }
+
+        /**
+         * Get the number of invocations with missing or invalid arguments.
+         *
+         * @return the invalid argument count
+         */
+        public long getInvalidArguments() {
+            return invalidArguments;
+        }
+
+        /**
+         * Get the number of executions which threw an exception.
+         *
+         * @return the exception count
+         */
+        public long getExceptions() {
+            return exceptions;
+        }
+
+        /**
+         * Get the number of executions which were abandoned after exceeding their timeout.
+         *
+         * @return the timeout count
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Get the number of invocations rejected because the command's concurrency and queue limits were reached.
+         *
+         * @return the rejection count
+         */
+        public long getRejections() {
+            return rejections;
+        }
+
+        /**
+         * Get the number of invocations rejected because the command's circuit breaker was open.
+         *
+         * @return the short circuit count
+         */
+        public long getShortCircuits() {
+            return shortCircuits;
+        }
+
+        /**
+         * Get the number of invocations answered with a cached result.
+         *
+         * @return the cache hit count
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * Get the number of executions whose resource usage has been accounted.
+         *
+         * @return the accounted execution count
+         */
+        public long getAccountedExecutions() {
+            return accountedExecutions;
+        }
+
+        /**
+         * Get the CPU time used by accounted executions.
+         *
+         * @return the CPU time in nanoseconds
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * Get the bytes allocated by accounted executions.
+         *
+         * @return the allocated bytes
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.util.ErrorReporter;
+import net.dv8tion.jda.api.entities.Message;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the command executions of a handler, reports those running longer than a threshold and abandons those
+ * running longer than their timeout.
+ *
+ * Every long lived thread which executes commands, i.e. pool threads, ring workers and event threads, owns a single
+ * {@link Execution} slot, registered the first time it runs a command. Starting and finishing an execution only
+ * writes to that slot, the watchdog thread periodically scans the slots and does all of the sampling, reporting and
+ * abandoning. Virtual threads usually run a single command each, so they get a slot per execution instead, held in
+ * a concurrent set until the watchdog has seen the execution finish. The watchdog thread is only started once
+ * something needs to be watched, until then {@link #isActive()} is false and nothing is tracked.
+ */
+final class CommandWatchdog {
+    private static final AtomicLongFieldUpdater<Execution> STARTED = AtomicLongFieldUpdater.newUpdater(Execution.class, "started");
+    // Start times are always odd, so these can never be mistaken for one.
+    private static final long IDLE = 0;
+    private static final long ABANDONING = 2;
+    private static final long ABANDONED = 4;
+
+    private static final int SAMPLES = 3;
+    private static final long MIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long REPORT_WINDOW = TimeUnit.MINUTES.toNanos(1);
+    private static final Method IS_VIRTUAL = findIsVirtual();
+
+    private final long threshold;
+    private final SlowCommandSink sink;
+    private final int reportLimit;
+    private final Consumer<Execution> timeouts;
+    private final List<Execution> executions = new CopyOnWriteArrayList<>();
+    private final Set<Execution> virtualExecutions = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Execution> current = new ThreadLocal<>();
+    private ScheduledExecutorService scanner;
+    private volatile boolean active = false;
+    private volatile long interval = MAX_INTERVAL;
+
+    // Only accessed by the watchdog thread.
+    private long windowStart = System.nanoTime();
+    private int windowReports = 0;
+    private int suppressed = 0;
+
+    /**
+     * @param threshold the slow command threshold in nanoseconds, 0 to disable slow command reports
+     * @param sink the slow command sink
+     * @param reportLimit the maximum number of slow command reports per minute
+     * @param timeouts called on the watchdog thread with a copy of an execution once it has been abandoned, must not
+     *                 block
+     */
+    CommandWatchdog(long threshold, SlowCommandSink sink, int reportLimit, Consumer<Execution> timeouts) {
+        this.threshold = threshold;
+        this.sink = sink;
+        this.reportLimit = reportLimit;
+        this.timeouts = timeouts;
+        if (threshold > 0)
+            watch(threshold);
+    }
+
+    /**
+     * Make sure executions are checked often enough to notice one exceeding the given duration, starting the
+     * watchdog thread if needed.
+     *
+     * @param nanos the duration
+     */
+    synchronized void watch(long nanos) {
+        interval = Math.max(MIN_INTERVAL, Math.min(interval, nanos / 4));
+        if (scanner != null)
+            return;
+        scanner = Executors.newSingleThreadScheduledExecutor(run -> {
+            Thread thread = new Thread(run, "bjda-command-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scanner.schedule(this::scan, interval, TimeUnit.NANOSECONDS);
+        active = true;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    private Execution slot() {
+        Execution execution = current.get();
+        if (execution != null)
+            return execution;
+        Thread thread = Thread.currentThread();
+        execution = new Execution(thread, isVirtual(thread));
+        current.set(execution);
+        if (!execution.virtual)
+            executions.add(execution);
+        return execution;
+    }
+
+    private static Method findIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Mark the start of a command execution on the current thread.
+     *
+     * @param timeout the timeout in nanoseconds, 0 for none
+     * @param pooled whether the execution runs on the command executor
+     * @return the slot to pass to {@link #end(Execution)}, or null if the thread is already executing a command
+     */
+    Execution begin(LoadedCommand command, String label, long guildId, long traceId, Message message, Consumer<Message> reply, long timeout, boolean pooled) {
+        Execution execution = slot();
+        if (execution.started != IDLE)
+            return null;
+        execution.command = command;
+        execution.label = label;
+        execution.guildId = guildId;
+        execution.traceId = traceId;
+        execution.message = message;
+        execution.reply = reply;
+        execution.timeout = timeout;
+        execution.pooled = pooled;
+        if (execution.virtual)
+            virtualExecutions.add(execution);
+        // Published last, the watchdog only reads the other fields once it has seen a start time.
+        execution.started = System.nanoTime() | 1;
+        return execution;
+    }
+
+    /**
+     * Mark the end of a command execution on the current thread.
+     *
+     * @param execution the slot returned by {@link #begin}
+     * @return false if the execution was abandoned, in which case its result must be ignored
+     */
+    boolean end(Execution execution) {
+        if (execution == null)
+            return true;
+        boolean completed = finish(execution);
+        // The slot stays in the set until the watchdog has seen it finish, so a slow report is not lost.
+        if (execution.virtual)
+            current.remove();
+        return completed;
+    }
+
+    private boolean finish(Execution execution) {
+        long started = execution.started;
+        if (started != ABANDONING && started != ABANDONED && STARTED.compareAndSet(execution, started, IDLE))
+            return true;
+        // Wait for the watchdog to finish interrupting this thread, then clear the interrupt.
+        while (execution.started == ABANDONING)
+            Thread.yield();
+        Thread.interrupted();
+        execution.message = null;
+        execution.reply = null;
+        execution.started = IDLE;
+        return false;
+    }
+
+    private void scan() {
+        try {
+            long now = System.nanoTime();
+            for (Execution execution : executions) {
+                if (!execution.thread.isAlive()) {
+                    executions.remove(execution);
+                    continue;
+                }
+                checkSafely(execution, now);
+            }
+            for (Execution execution : virtualExecutions) {
+                checkSafely(execution, now);
+                if (execution.started == IDLE)
+                    virtualExecutions.remove(execution);
+            }
+        } finally {
+            scanner.schedule(this::scan, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void checkSafely(Execution execution, long now) {
+        try {
+            check(execution, now);
+        } catch (Throwable e) {
+            ErrorReporter.report("watchdog", e);
+        }
+    }
+
+    private void check(Execution execution, long now) {
+        long started = execution.started;
+        if (execution.samples != null && execution.sampled != started) {
+            // Finished while it was being sampled, report what was collected.
+            report(execution);
+        }
+        if ((started & 1) == 0)
+            return;
+
+        long timeout = execution.timeout;
+        if (timeout > 0 && now - started >= timeout && STARTED.compareAndSet(execution, started, ABANDONING)) {
+            // Copied while the slot is held, the thread reuses it as soon as it sees ABANDONED.
+            Execution abandoned = execution.copy();
+            try {
+                if (execution.samples != null)
+                    report(execution);
+                execution.thread.interrupt();
+            } finally {
+                execution.started = ABANDONED;
+            }
+            timeouts.accept(abandoned);
+            return;
+        }
+
+        if (threshold <= 0 || now - started < threshold)
+            return;
+        if (execution.sampled != started) {
+            execution.sampled = started;
+            if (!acquire())
+                return;
+            execution.snapshot = new SlowCommandReport(execution.command, execution.label, execution.guildId, execution.traceId, execution.thread.getName(), 0, null, 0);
+            if (execution.started != started)
+                return;
+            execution.samples = new ArrayList<>(SAMPLES);
+        } else if (execution.samples == null) {
+            return;
+        }
+
+        StackTraceElement[] stack = execution.thread.getStackTrace();
+        if (execution.started != started) {
+            report(execution);
+            return;
+        }
+        execution.samples.add(stack);
+        execution.elapsed = System.nanoTime() - started;
+        if (execution.samples.size() >= SAMPLES)
+            report(execution);
+    }
+
+    private boolean acquire() {
+        long now = System.nanoTime();
+        if (now - windowStart >= REPORT_WINDOW) {
+            windowStart = now;
+            windowReports = 0;
+        }
+        if (windowReports >= reportLimit) {
+            suppressed++;
+            return false;
+        }
+        windowReports++;
+        return true;
+    }
+
+    private void report(Execution execution) {
+        List<StackTraceElement[]> samples = execution.samples;
+        SlowCommandReport snapshot = execution.snapshot;
+        execution.samples = null;
+        execution.snapshot = null;
+        if (samples.isEmpty())
+            return;
+        SlowCommandReport report = new SlowCommandReport(snapshot.getCommand(), snapshot.getLabel(), snapshot.getGuildId(), snapshot.getTraceId(), snapshot.getThreadName(), execution.elapsed, Collections.unmodifiableList(samples), suppressed);
+        suppressed = 0;
+        sink.report(report);
+    }
+
+    /**
+     * The execution slot of a single thread. The details of the current execution are only valid while it is
+     * running or being abandoned.
+     */
+    static final class Execution {
+        private final Thread thread;
+        // Whether this is the slot of a single execution on a virtual thread.
+        private final boolean virtual;
+        volatile long started = IDLE;
+        LoadedCommand command;
+        String label;
+        long guildId;
+        long traceId;
+        Message message;
+        Consumer<Message> reply;
+        long timeout;
+        boolean pooled;
+
+        // Only accessed by the watchdog thread.
+        private long sampled = 0;
+        private long elapsed = 0;
+        private SlowCommandReport snapshot;
+        private List<StackTraceElement[]> samples;
+
+        private Execution(Thread thread, boolean virtual) {
+            this.thread = thread;
+            this.virtual = virtual;
+        }
+
+        Thread getThread() {
+            return thread;
+        }
+
+        private Execution copy() {
+            Execution copy = new Execution(thread, virtual);
+            copy.command = command;
+            copy.label = label;
+            copy.guildId = guildId;
+            copy.traceId = traceId;
+            copy.message = message;
+            copy.reply = reply;
+            copy.timeout = timeout;
+            copy.pooled = pooled;
+            return copy;
+        }
+    }
+}
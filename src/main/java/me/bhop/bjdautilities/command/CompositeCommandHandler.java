@@ -0,0 +1,284 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.util.ShardGroup;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
+
+import java.util.*;
+
+/**
+ * A single message listener in front of several {@link CommandHandler}s.
+ *
+ * The guild, webhook and bot checks are done once per message, then the message is routed to the handler owning
+ * its prefix with one walk of a prefix trie built from every prefix the handlers know about. When several prefixes
+ * match (e.g. {@code !} and {@code !!}), the longest one which is the handler's prefix in the message's guild wins.
+ * The per message cost therefore does not grow with the number of handlers.
+ *
+ * The handlers stay registered on their shards, where they keep counting received messages, but they only
+ * dispatch messages routed to them by the composite. A prefix change made through a handler's setPrefix method
+ * only copies the path of the changed prefix in the trie.
+ */
+public class CompositeCommandHandler extends ListenerAdapter {
+    private final ShardGroup shards;
+    private final List<CommandHandler> handlers;
+    private final ShardStatistics statistics;
+
+    private volatile Node root;
+
+    private CompositeCommandHandler(ShardGroup shards, List<CommandHandler> handlers) {
+        this.shards = shards;
+        this.handlers = handlers;
+        this.statistics = new ShardStatistics(shards.getShardCount());
+        rebuild();
+    }
+
+    @Override
+    public void onMessageReceived(MessageReceivedEvent event) {
+        statistics.received(shards.getShardId(event.getJDA()));
+        if (!event.isFromGuild() || event.isWebhookMessage() || event.getAuthor().isBot())
+            return;
+
+        Guild guild = event.getGuild();
+        String content = event.getMessage().getContentRaw();
+        CommandHandler match = null;
+        String prefix = null;
+        Node node = root;
+        // The prefix must be followed by at least one character, so the last character is never part of it.
+        for (int i = 0; i < content.length() - 1; i++) {
+            node = node.child(content.charAt(i));
+            if (node == null)
+                break;
+            for (CommandHandler handler : node.handlers) {
+                if (node.prefix.equals(handler.getPrefix(guild))) {
+                    match = handler;
+                    prefix = node.prefix;
+                    break;
+                }
+            }
+        }
+        if (match == null)
+            return;
+
+        statistics.dispatched(shards.getShardId(event.getJDA()));
+        match.dispatch(event, prefix, CommandHandler.tokenize(content));
+    }
+
+    /**
+     * Get the handlers behind this composite.
+     *
+     * @return the handlers
+     */
+    public List<CommandHandler> getHandlers() {
+        return handlers;
+    }
+
+    /**
+     * Get the per shard counters of this composite. Only messages routed to a handler count as dispatched.
+     *
+     * @return the shard statistics
+     */
+    public ShardStatistics getShardStatistics() {
+        return statistics;
+    }
+
+    private synchronized void rebuild() {
+        Node root = new Node("");
+        for (CommandHandler handler : handlers) {
+            for (String prefix : handler.getKnownPrefixes()) {
+                Node node = root;
+                for (int i = 0; i < prefix.length(); i++)
+                    node = node.getOrCreate(prefix.charAt(i));
+                node.handlers = append(node.handlers, handler);
+            }
+        }
+        this.root = root;
+    }
+
+    private synchronized void update(CommandHandler handler, String removed, String added) {
+        Node root = this.root;
+        if (removed != null)
+            root = with(root, removed, 0, handler, false);
+        if (added != null)
+            root = with(root, added, 0, handler, true);
+        this.root = root;
+    }
+
+    /**
+     * Copy the nodes along the path of a prefix, adding the handler to or removing it from the node of the prefix.
+     * The published trie is left untouched, so messages routed while it is updated see either version.
+     */
+    private static Node with(Node node, String prefix, int depth, CommandHandler handler, boolean add) {
+        Node copy = node.copy();
+        if (depth == prefix.length()) {
+            copy.handlers = add ? append(node.handlers, handler) : remove(node.handlers, handler);
+            return copy;
+        }
+        char c = prefix.charAt(depth);
+        Node child = node.child(c);
+        if (child == null) {
+            if (!add)
+                return node;
+            child = new Node(prefix.substring(0, depth + 1));
+        }
+        copy.put(c, with(child, prefix, depth + 1, handler, add));
+        return copy;
+    }
+
+    private static CommandHandler[] remove(CommandHandler[] handlers, CommandHandler handler) {
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] == handler) {
+                CommandHandler[] removed = new CommandHandler[handlers.length - 1];
+                System.arraycopy(handlers, 0, removed, 0, i);
+                System.arraycopy(handlers, i + 1, removed, i, removed.length - i);
+                return removed;
+            }
+        }
+        return handlers;
+    }
+
+    private static CommandHandler[] append(CommandHandler[] handlers, CommandHandler handler) {
+        for (CommandHandler existing : handlers)
+            if (existing == handler)
+                return handlers;
+        CommandHandler[] appended = Arrays.copyOf(handlers, handlers.length + 1);
+        appended[handlers.length] = handler;
+        return appended;
+    }
+
+    /**
+     * A prefix trie node. Nodes are never modified once the trie has been published.
+     */
+    private static class Node {
+        private static final CommandHandler[] NONE = new CommandHandler[0];
+
+        private final String prefix;
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private CommandHandler[] handlers = NONE;
+
+        private Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        private Node child(char c) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] == c)
+                    return children[i];
+            return null;
+        }
+
+        private Node copy() {
+            Node copy = new Node(prefix);
+            copy.keys = keys;
+            copy.children = children;
+            copy.handlers = handlers;
+            return copy;
+        }
+
+        /**
+         * Replace the child of a character, dropping it if it leads to no handlers. Only used on unpublished copies.
+         */
+        private void put(char c, Node child) {
+            boolean empty = child.handlers.length == 0 && child.keys.length == 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    if (!empty) {
+                        children = Arrays.copyOf(children, children.length);
+                        children[i] = child;
+                        return;
+                    }
+                    char[] fewerKeys = new char[keys.length - 1];
+                    Node[] fewerChildren = new Node[fewerKeys.length];
+                    System.arraycopy(keys, 0, fewerKeys, 0, i);
+                    System.arraycopy(keys, i + 1, fewerKeys, i, fewerKeys.length - i);
+                    System.arraycopy(children, 0, fewerChildren, 0, i);
+                    System.arraycopy(children, i + 1, fewerChildren, i, fewerChildren.length - i);
+                    keys = fewerKeys;
+                    children = fewerChildren;
+                    return;
+                }
+            }
+            if (empty)
+                return;
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = child;
+        }
+
+        private Node getOrCreate(char c) {
+            Node child = child(c);
+            if (child != null)
+                return child;
+            child = new Node(prefix + c);
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = child;
+            return child;
+        }
+    }
+
+    /**
+     * A convenient builder for creating {@link CompositeCommandHandler}s.
+     */
+    public static class Builder {
+        private final ShardGroup shards;
+        private final List<CommandHandler> handlers = new ArrayList<>();
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param jda the {@link JDA} instance
+         */
+        public Builder(JDA jda) {
+            this(ShardGroup.of(jda));
+        }
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param shardManager the {@link ShardManager} instance
+         */
+        public Builder(ShardManager shardManager) {
+            this(ShardGroup.of(shardManager));
+        }
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param shards the shards to listen on
+         */
+        public Builder(ShardGroup shards) {
+            this.shards = shards;
+        }
+
+        /**
+         * Add a handler to route messages to.
+         *
+         * @param handler the handler
+         */
+        public Builder addHandler(CommandHandler handler) {
+            handlers.add(handler);
+            return this;
+        }
+
+        /**
+         * Build the {@link CompositeCommandHandler}, taking over message routing from its handlers.
+         *
+         * @return the composite handler
+         */
+        public CompositeCommandHandler build() {
+            CompositeCommandHandler composite = new CompositeCommandHandler(shards, Collections.unmodifiableList(new ArrayList<>(handlers)));
+            for (CommandHandler handler : handlers)
+                handler.compose((removed, added) -> composite.update(handler, removed, added));
+            // Catch prefix changes made before the handlers reported them to the composite.
+            composite.rebuild();
+            shards.addEventListener(composite);
+            return composite;
+        }
+    }
+}
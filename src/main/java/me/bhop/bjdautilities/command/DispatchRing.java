@@ -0,0 +1,255 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.util.ErrorReporter;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, lock-free hand-off of dispatched messages from the event threads to a fixed set of workers.
+ *
+ * The slots are allocated up front and reused, so publishing a message only claims a slot and copies the
+ * dispatch state into it. Each slot carries a sequence number which tells producers and workers whose turn it is,
+ * so several event threads can publish and several workers can consume at once without locks.
+ *
+ * A worker whose execution is abandoned by the watchdog is replaced by a new worker right away, and exits once the
+ * abandoned execution returns, so the number of workers taking messages stays the same.
+ */
+final class DispatchRing {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final AtomicInteger rings = new AtomicInteger();
+
+    private final int ring = rings.incrementAndGet();
+    private final AtomicInteger workerIds = new AtomicInteger();
+
+    private final CommandHandler handler;
+    private final Slot[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only used by the blocking wait strategy.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    /**
+     * @param capacity the number of slots, a power of two
+     * @param workers the number of worker threads
+     */
+    DispatchRing(CommandHandler handler, int capacity, int workers, WaitStrategy waitStrategy) {
+        this.handler = handler;
+        this.slots = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++)
+            slots[i] = new Slot(i);
+
+        for (int i = 0; i < workers; i++)
+            startWorker();
+    }
+
+    private void startWorker() {
+        Worker worker = new Worker(this, "bjda-dispatch-" + ring + "-" + workerIds.incrementAndGet());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Publish a dispatched message to the workers.
+     *
+     * @return false if the ring is full and the message has to be handed off some other way
+     */
+    boolean publish(MessageReceivedEvent event, String prefix, String[] tokens, String label, LoadedCommand cmd, Member member, int responseLifetime, long queued, Object flight) {
+        long position = head.get();
+        Slot slot;
+        for (;;) {
+            slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1))
+                    break;
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+
+        slot.event = event;
+        slot.prefix = prefix;
+        slot.tokens = tokens;
+        slot.label = label;
+        slot.cmd = cmd;
+        slot.member = member;
+        slot.responseLifetime = responseLifetime;
+        slot.queued = queued;
+        slot.flight = flight;
+        slot.sequence = position + 1;
+
+        if (waitStrategy == WaitStrategy.BLOCKING && sleepers.get() > 0) {
+            lock.lock();
+            try {
+                published.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    private boolean isEmpty() {
+        long position = tail.get();
+        return slots[(int) position & mask].sequence - (position + 1) < 0;
+    }
+
+    /**
+     * Take the next message off the ring and execute it on the current thread.
+     *
+     * @return false if the ring was empty
+     */
+    private boolean poll() {
+        long position = tail.get();
+        Slot slot;
+        for (;;) {
+            slot = slots[(int) position & mask];
+            long difference = slot.sequence - (position + 1);
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1))
+                    break;
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        MessageReceivedEvent event = slot.event;
+        String prefix = slot.prefix;
+        String[] tokens = slot.tokens;
+        String label = slot.label;
+        LoadedCommand cmd = slot.cmd;
+        Member member = slot.member;
+        int responseLifetime = slot.responseLifetime;
+        long queued = slot.queued;
+        Object flight = slot.flight;
+        slot.event = null;
+        slot.tokens = null;
+        slot.member = null;
+        slot.flight = null;
+        // Hand the slot back to the producers before running the command.
+        slot.sequence = position + slots.length;
+
+        try {
+            handler.executeQueued(event, prefix, tokens, label, cmd, member, responseLifetime, queued, flight);
+        } catch (Exception e) {
+            ErrorReporter.report("dispatch", e);
+        }
+        return true;
+    }
+
+    private void work(Worker worker) {
+        int idle = 0;
+        for (;;) {
+            if (poll()) {
+                if (worker.retired)
+                    return;
+                idle = 0;
+                continue;
+            }
+            idle++;
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    break;
+                case YIELDING:
+                    if (idle > SPIN_TRIES)
+                        Thread.yield();
+                    break;
+                case SLEEPING:
+                    if (idle > SPIN_TRIES + YIELD_TRIES)
+                        LockSupport.parkNanos(SLEEP);
+                    else if (idle > SPIN_TRIES)
+                        Thread.yield();
+                    break;
+                case BLOCKING:
+                    block();
+                    break;
+            }
+        }
+    }
+
+    private void block() {
+        lock.lock();
+        try {
+            sleepers.incrementAndGet();
+            // Checked after registering as a sleeper, so a message published in between is not missed.
+            while (isEmpty())
+                published.await();
+        } catch (InterruptedException ignored) {
+        } finally {
+            sleepers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A thread taking messages off a ring.
+     */
+    static final class Worker extends Thread {
+        private final DispatchRing ring;
+        // Only accessed by the worker itself.
+        private boolean retired = false;
+
+        private Worker(DispatchRing ring, String name) {
+            super(name);
+            this.ring = ring;
+        }
+
+        @Override
+        public void run() {
+            ring.work(this);
+        }
+
+        /**
+         * Start a worker taking this one's place while it is stuck in an abandoned execution.
+         */
+        void replace() {
+            ring.startWorker();
+        }
+
+        /**
+         * Make this worker exit once its abandoned execution has returned. Must be called from the worker itself.
+         */
+        void retire() {
+            retired = true;
+        }
+    }
+
+    private static final class Slot {
+        private volatile long sequence;
+        private MessageReceivedEvent event;
+        private String prefix;
+        private String[] tokens;
+        private String label;
+        private LoadedCommand cmd;
+        private Member member;
+        private int responseLifetime;
+        private long queued;
+        private Object flight;
+
+        private Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
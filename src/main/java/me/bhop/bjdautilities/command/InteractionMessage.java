@@ -0,0 +1,636 @@
+package me.bhop.bjdautilities.command;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.*;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.LayoutComponent;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
+import net.dv8tion.jda.api.requests.restaction.MessageAction;
+import net.dv8tion.jda.api.requests.restaction.pagination.ReactionPaginationAction;
+import net.dv8tion.jda.api.utils.AttachmentOption;
+import org.apache.commons.collections4.Bag;
+import org.apache.commons.collections4.bag.HashBag;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * The {@link Message} handed to commands, responses and result handlers for a slash command interaction.
+ *
+ * An interaction has no message of its own, so this is a read-only view of the interaction: its id is the
+ * interaction id, its channel, author and member are the ones which used the command, and its content is the
+ * command written out, e.g. {@code /ban user reason}. It has no mentions, attachments, embeds or reactions.
+ *
+ * Nothing on Discord has this id, so every request which would act on the message itself, such as deleting,
+ * editing, pinning, reacting to or replying to it, throws an {@link UnsupportedOperationException} instead of
+ * failing later with an unknown message error. Commands should answer through their result, which is sent to the
+ * interaction, or use the {@link #getHook() interaction hook} directly. Requests made on the {@link #getChannel()
+ * channel} work as usual.
+ */
+public final class InteractionMessage implements Message {
+    private final InteractionHook hook;
+    private final long id;
+    private final OffsetDateTime timeCreated;
+    private final MessageChannel channel;
+    private final Guild guild;
+    private final User author;
+    private final Member member;
+    private final String content;
+
+    InteractionMessage(SlashCommandInteractionEvent event, String content) {
+        this.hook = event.getHook();
+        this.id = event.getIdLong();
+        this.timeCreated = event.getTimeCreated();
+        this.channel = event.getMessageChannel();
+        this.guild = event.isFromGuild() ? event.getGuild() : null;
+        this.author = event.getUser();
+        this.member = event.getMember();
+        this.content = content;
+    }
+
+    /**
+     * Get the hook of the interaction this message stands for, which can be used to edit or delete the deferred
+     * reply or to send follow up messages.
+     *
+     * @return the interaction hook
+     */
+    @Nonnull
+    public InteractionHook getHook() {
+        return hook;
+    }
+
+    private static UnsupportedOperationException unsupported(String action) {
+        return new UnsupportedOperationException("Cannot " + action + " the message of a slash command interaction, use the interaction hook instead!");
+    }
+
+    @Override
+    @Nonnull
+    public List<User> getMentionedUsers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public Bag<User> getMentionedUsersBag() {
+        return new HashBag<>();
+    }
+
+    @Override
+    @Nonnull
+    public List<TextChannel> getMentionedChannels() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public Bag<TextChannel> getMentionedChannelsBag() {
+        return new HashBag<>();
+    }
+
+    @Override
+    @Nonnull
+    public List<Role> getMentionedRoles() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public Bag<Role> getMentionedRolesBag() {
+        return new HashBag<>();
+    }
+
+    @Override
+    @Nonnull
+    public List<Member> getMentionedMembers(@NotNull Guild guild) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public List<Member> getMentionedMembers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public List<IMentionable> getMentions(@NotNull MentionType... types) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isMentioned(@NotNull IMentionable mentionable, @NotNull MentionType... types) {
+        return false;
+    }
+
+    @Override
+    public boolean mentionsEveryone() {
+        return false;
+    }
+
+    @Override
+    public boolean isEdited() {
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public OffsetDateTime getTimeEdited() {
+        return null;
+    }
+
+    @Override
+    @Nonnull
+    public User getAuthor() {
+        return author;
+    }
+
+    @Override
+    @Nullable
+    public Member getMember() {
+        return member;
+    }
+
+    @Override
+    @Nonnull
+    public String getJumpUrl() {
+        return String.format(Message.JUMP_URL, guild == null ? "@me" : guild.getId(), channel.getId(), getId());
+    }
+
+    @Override
+    @Nonnull
+    public String getContentDisplay() {
+        return content;
+    }
+
+    @Override
+    @Nonnull
+    public String getContentRaw() {
+        return content;
+    }
+
+    @Override
+    @Nonnull
+    public String getContentStripped() {
+        return content;
+    }
+
+    @Override
+    @Nonnull
+    public List<String> getInvites() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nullable
+    public String getNonce() {
+        return null;
+    }
+
+    @Override
+    public boolean isFromType(@NotNull ChannelType type) {
+        return getChannelType() == type;
+    }
+
+    @Override
+    public boolean isFromGuild() {
+        return guild != null;
+    }
+
+    @Override
+    @Nonnull
+    public ChannelType getChannelType() {
+        return channel.getType();
+    }
+
+    @Override
+    public boolean isWebhookMessage() {
+        return false;
+    }
+
+    @Override
+    @Nonnull
+    public MessageChannel getChannel() {
+        return channel;
+    }
+
+    @NotNull
+    @Override
+    public GuildMessageChannel getGuildChannel() {
+        if (!(channel instanceof GuildMessageChannel))
+            throw new IllegalStateException("This message was not sent in a guild!");
+        return (GuildMessageChannel) channel;
+    }
+
+    @Override
+    @Nonnull
+    public PrivateChannel getPrivateChannel() {
+        if (!(channel instanceof PrivateChannel))
+            throw new IllegalStateException("This message was not sent in a private channel!");
+        return (PrivateChannel) channel;
+    }
+
+    @Override
+    @Nonnull
+    public TextChannel getTextChannel() {
+        if (!(channel instanceof TextChannel))
+            throw new IllegalStateException("This message was not sent in a text channel!");
+        return (TextChannel) channel;
+    }
+
+    @NotNull
+    @Override
+    public NewsChannel getNewsChannel() {
+        if (!(channel instanceof NewsChannel))
+            throw new IllegalStateException("This message was not sent in a news channel!");
+        return (NewsChannel) channel;
+    }
+
+    @Override
+    @Nullable
+    public Category getCategory() {
+        return channel instanceof ICategorizableChannel ? ((ICategorizableChannel) channel).getParentCategory() : null;
+    }
+
+    @Override
+    @Nonnull
+    public Guild getGuild() {
+        if (guild == null)
+            throw new IllegalStateException("This message was not sent in a guild!");
+        return guild;
+    }
+
+    @Override
+    @Nonnull
+    public List<Attachment> getAttachments() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public List<MessageEmbed> getEmbeds() {
+        return Collections.emptyList();
+    }
+
+    @NotNull
+    @Override
+    public List<ActionRow> getActionRows() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public List<Emote> getEmotes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    @Nonnull
+    public Bag<Emote> getEmotesBag() {
+        return new HashBag<>();
+    }
+
+    @Override
+    @Nonnull
+    public List<MessageReaction> getReactions() {
+        return Collections.emptyList();
+    }
+
+    @NotNull
+    @Override
+    public List<MessageSticker> getStickers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isTTS() {
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public MessageActivity getActivity() {
+        return null;
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction editMessage(@NotNull CharSequence newContent) {
+        throw unsupported("edit");
+    }
+
+    @NotNull
+    @Override
+    public MessageAction editMessageEmbeds(@NotNull Collection<? extends MessageEmbed> embeds) {
+        throw unsupported("edit");
+    }
+
+    @NotNull
+    @Override
+    public MessageAction editMessageComponents(@NotNull Collection<? extends LayoutComponent> components) {
+        throw unsupported("edit");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction editMessageFormat(@NotNull String format, @NotNull Object... args) {
+        throw unsupported("edit");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction editMessage(@NotNull Message newContent) {
+        throw unsupported("edit");
+    }
+
+    // The reply methods are defaults which reference this message, which Discord would reject.
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull CharSequence content) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull Message content) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction replyEmbeds(@NotNull MessageEmbed embed, @NotNull MessageEmbed... other) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction replyEmbeds(@NotNull Collection<? extends MessageEmbed> embeds) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction replyFormat(@NotNull String format, @NotNull Object... args) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull File file, @NotNull AttachmentOption... options) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull File data, @NotNull String name, @NotNull AttachmentOption... options) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull InputStream data, @NotNull String name, @NotNull AttachmentOption... options) {
+        throw unsupported("reply to");
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public MessageAction reply(@NotNull byte[] data, @NotNull String name, @NotNull AttachmentOption... options) {
+        throw unsupported("reply to");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public AuditableRestAction<Void> delete() {
+        throw unsupported("delete");
+    }
+
+    @Override
+    @Nonnull
+    public JDA getJDA() {
+        return author.getJDA();
+    }
+
+    @Override
+    public boolean isPinned() {
+        return false;
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> pin() {
+        throw unsupported("pin");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> unpin() {
+        throw unsupported("unpin");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> addReaction(@NotNull Emote emote) {
+        throw unsupported("react to");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> addReaction(@NotNull String unicode) {
+        throw unsupported("react to");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> clearReactions() {
+        throw unsupported("clear the reactions of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> clearReactions(@NotNull String unicode) {
+        throw unsupported("clear the reactions of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> clearReactions(@NotNull Emote emote) {
+        throw unsupported("clear the reactions of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> removeReaction(@NotNull Emote emote) {
+        throw unsupported("remove a reaction from");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> removeReaction(@NotNull Emote emote, @NotNull User user) {
+        throw unsupported("remove a reaction from");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> removeReaction(@NotNull String unicode) {
+        throw unsupported("remove a reaction from");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Void> removeReaction(@NotNull String unicode, @NotNull User user) {
+        throw unsupported("remove a reaction from");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public ReactionPaginationAction retrieveReactionUsers(@NotNull Emote emote) {
+        throw unsupported("retrieve the reactions of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public ReactionPaginationAction retrieveReactionUsers(@NotNull String unicode) {
+        throw unsupported("retrieve the reactions of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nullable
+    public MessageReaction getReactionByUnicode(@NotNull String unicode) {
+        return null;
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nullable
+    public MessageReaction getReactionById(@NotNull String id) {
+        return null;
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nullable
+    public MessageReaction getReactionById(long id) {
+        return null;
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public AuditableRestAction<Void> suppressEmbeds(boolean suppressed) {
+        throw unsupported("suppress the embeds of");
+    }
+
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public RestAction<Message> crosspost() {
+        throw unsupported("crosspost");
+    }
+
+    @Override
+    public boolean isSuppressedEmbeds() {
+        return false;
+    }
+
+    @Override
+    @Nonnull
+    public EnumSet<MessageFlag> getFlags() {
+        return EnumSet.noneOf(MessageFlag.class);
+    }
+
+    @Override
+    public long getFlagsRaw() {
+        return 0;
+    }
+
+    @Override
+    public boolean isEphemeral() {
+        return false;
+    }
+
+    @Override
+    @Nonnull
+    public MessageType getType() {
+        return MessageType.SLASH_COMMAND;
+    }
+
+    @org.jetbrains.annotations.Nullable
+    @Override
+    public Interaction getInteraction() {
+        return null;
+    }
+
+    @Override
+    public RestAction<ThreadChannel> createThreadChannel(String name) {
+        throw unsupported("start a thread on");
+    }
+
+    @org.jetbrains.annotations.Nullable
+    @Override
+    public MessageReference getMessageReference() {
+        return null;
+    }
+
+    @Override
+    public Message getReferencedMessage() {
+        return null;
+    }
+
+    @Override
+    @Nonnull
+    public String getId() {
+        return Long.toUnsignedString(id);
+    }
+
+    @Override
+    public long getIdLong() {
+        return id;
+    }
+
+    @Override
+    @Nonnull
+    public OffsetDateTime getTimeCreated() {
+        return timeCreated;
+    }
+
+    @Override
+    public void formatTo(Formatter formatter, int flags, int width, int precision) {
+        formatter.format("%s", content);
+    }
+
+    @Override
+    public String toString() {
+        return "InteractionMessage(" + id + ")";
+    }
+}
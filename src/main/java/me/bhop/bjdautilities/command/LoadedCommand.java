@@ -25,6 +25,8 @@
 
 package me.bhop.bjdautilities.command;
 
+import me.bhop.bjdautilities.command.annotation.Autocomplete;
+import me.bhop.bjdautilities.command.annotation.Cacheable;
 import me.bhop.bjdautilities.command.annotation.Command;
 import me.bhop.bjdautilities.command.annotation.Execute;
 import me.bhop.bjdautilities.command.annotation.Usage;
@@ -33,6 +35,8 @@ import me.bhop.bjdautilities.command.result.CommandResult;
 import me.bhop.bjdautilities.exception.CommandExecuteException;
 import me.bhop.bjdautilities.exception.CommandInitException;
 import me.bhop.bjdautilities.exception.MethodInvocationException;
+import me.bhop.bjdautilities.metrics.ThreadUsage;
+import me.bhop.bjdautilities.util.ErrorReporter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
@@ -41,7 +45,9 @@ import net.dv8tion.jda.api.entities.TextChannel;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * A representation of a registered / loaded {@link Command}.
@@ -81,18 +87,39 @@ public class LoadedCommand {
     private final String usageString;
     private final String description;
     private final List<Permission> permission;
+    private final Permission[] permissionArray;
+    private final boolean requiresPermission;
     private final int minArgs;
     private final boolean hideInHelp;
+    private final long timeout;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final String circuit;
+    private final Command.Mode mode;
+    private final long cacheTtl;
+    private final boolean cacheByGuild;
+    private final boolean cacheByChannel;
+    private final boolean cacheByArgs;
     private final Set<Class<?>> childClasses = new HashSet<>();
     private final Set<LoadedCommand> children = new HashSet<>();
+    // The children as an array, so they can be searched without an iterator.
+    private volatile LoadedCommand[] childArray = new LoadedCommand[0];
     private final List<Object> customParams;
 
     private Method execute = null;
     private Method usage = null;
+    private AutocompleteIndex autocomplete = null;
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final ThreadLocal<Object[]> invocationArgs = new ThreadLocal<>();
 
     // Temporary until better solution
     CommandResponses responses;
     BiConsumer<TextChannel, Message> sendMessage;
+    boolean accountResources = false;
+    Bulkhead bulkhead = null;
+    CircuitBreaker circuitBreaker = null;
+    // Set once an inline execution exceeded the inline budget.
+    volatile boolean demoted = false;
 
     private LoadedCommand(Object instance, List<Object> customParams) {
         this.customParams = customParams;
@@ -115,23 +142,62 @@ public class LoadedCommand {
         usageString = ca.usage();
         description = ca.description();
         permission = new ArrayList<>(Arrays.asList(ca.permission()));
+        permissionArray = ca.permission();
+        requiresPermission = permission.stream().anyMatch(p -> p != Permission.UNKNOWN);
         minArgs = ca.minArgs();
         hideInHelp = ca.hideInHelp();
+        timeout = ca.timeout();
+        maxConcurrency = ca.maxConcurrency();
+        maxQueued = ca.maxQueued();
+        if (maxConcurrency < 0 || maxQueued < 0)
+            throw new CommandInitException(clazz, "The concurrency and queue limits cannot be negative.");
+        Cacheable cacheable = clazz.getAnnotation(Cacheable.class);
+        if (cacheable != null && cacheable.ttl() <= 0)
+            throw new CommandInitException(clazz, "The cache time to live must be positive.");
+        cacheTtl = cacheable == null ? 0 : TimeUnit.MILLISECONDS.toNanos(cacheable.ttl());
+        List<Cacheable.Key> cacheKeys = cacheable == null ? Collections.emptyList() : Arrays.asList(cacheable.key());
+        cacheByGuild = cacheKeys.contains(Cacheable.Key.GUILD);
+        cacheByChannel = cacheKeys.contains(Cacheable.Key.CHANNEL);
+        cacheByArgs = cacheKeys.contains(Cacheable.Key.ARGS);
+
+        circuit = ca.circuit();
+        mode = ca.mode();
+        if (circuit.isEmpty() && ca.failureThreshold() > 0)
+            circuitBreaker = new CircuitBreaker(ca.failureThreshold(), ca.coolDown(), TimeUnit.MILLISECONDS);
 
         for (Method method : clazz.getMethods()) {
             if (method.getAnnotation(Execute.class) != null)
                 execute = method;
             else if (method.getAnnotation(Usage.class) != null)
                 usage = method;
+            else if (method.getAnnotation(Autocomplete.class) != null)
+                autocomplete = loadAutocomplete(method);
         }
         if (execute == null && childClasses.isEmpty())
             throw new CommandInitException(clazz, "No valid execute method has been found for a command with no children!");
+        // Only reply results are cached, a command which cannot return one would never hit the cache.
+        if (cacheable != null && (execute == null || !execute.getReturnType().isAssignableFrom(CommandResult.Reply.class)))
+            throw new CommandInitException(clazz, "Cacheable commands must have an execute method which can return a reply result.");
         if (execute != null)
             execute.setAccessible(true);
         if (usage != null)
             usage.setAccessible(true);
     }
 
+    private AutocompleteIndex loadAutocomplete(Method method) {
+        if (method.getParameterCount() != 0 || !AutocompleteIndex.class.isAssignableFrom(method.getReturnType()))
+            throw new CommandInitException(clazz, "Autocomplete methods must take no parameters and return an AutocompleteIndex.");
+        try {
+            method.setAccessible(true);
+            AutocompleteIndex index = (AutocompleteIndex) method.invoke(instance);
+            if (index == null)
+                throw new CommandInitException(clazz, "The autocomplete method returned null.");
+            return index;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new CommandInitException(clazz, "Failed to invoke the autocomplete method: " + e);
+        }
+    }
+
     /**
      * Register a child command to this command.
      *
@@ -141,9 +207,10 @@ public class LoadedCommand {
      * @return whether the child was registered successfully
      */
     boolean registerChild(LoadedCommand child) {
-        if (childClasses.contains(child.getCommandClass()))
-            return children.add(child);
-        return false;
+        if (!childClasses.contains(child.getCommandClass()) || !children.add(child))
+            return false;
+        childArray = children.toArray(new LoadedCommand[0]);
+        return true;
     }
 
     /**
@@ -157,55 +224,91 @@ public class LoadedCommand {
      * @return the result of the command
      */
     public CommandResult execute(Member member, TextChannel channel, Message message, String label, List<String> args) {
-        List<String> arguments = new ArrayList<>(args);
+        return execute(member, channel, message, label, args, null);
+    }
+
+    /**
+     * Execute this command, sending the responses of failed sub command checks through a reply function.
+     *
+     * @param reply how to respond, or null to send responses to the channel
+     */
+    CommandResult execute(Member member, TextChannel channel, Message message, String label, List<String> args, Consumer<Message> reply) {
+        ArgumentList arguments = args instanceof ArgumentList ? (ArgumentList) args : new ArgumentList(args.toArray(new String[0]), 0);
 
         if (arguments.size() > 0) {
             String newLabel = arguments.get(0);
-            arguments.remove(0);
-
-            Optional<LoadedCommand> opt = children.stream()
-                    .filter(cmd -> cmd.getLabels().contains(newLabel))
-                    .findFirst();
+            LoadedCommand sub = null;
+            for (LoadedCommand child : childArray) {
+                if (child.labels.contains(newLabel)) {
+                    sub = child;
+                    break;
+                }
+            }
 
-            if (opt.isPresent()) {
-                LoadedCommand sub = opt.get();
-                if (!member.hasPermission(permission)){
-                    sendMessage.accept(channel, responses.noPerms(message, sub.getPermission()));
+            if (sub != null) {
+                ArgumentList subArguments = arguments.tail();
+                if (!isPermitted(member)){
+                    sub.metrics.permissionDenied();
+                    respond(reply, channel, responses.noPerms(message, sub.getPermission()));
                     return CommandResult.success();
                 }
-                if (sub.getMinArgs() > arguments.size()) {
-                    sendMessage.accept(channel, responses.notEnoughArguments(message, sub.minArgs, arguments));
+                if (sub.getMinArgs() > subArguments.size()) {
+                    sub.metrics.invalidArguments();
+                    respond(reply, channel, responses.notEnoughArguments(message, sub.minArgs, subArguments));
                     return CommandResult.success();
                 }
 
-                CommandResult result = sub.execute(member, channel, message, newLabel, arguments);
-                if (result instanceof CommandResult.InvalidArguments && !sub.usage(member, channel, message, label, arguments))
-                    sendMessage.accept(channel, responses.usage(message, arguments, sub.usageString));
-                return CommandResult.success();
+                CommandResult result = sub.execute(member, channel, message, newLabel, subArguments, reply);
+                if (result instanceof CommandResult.InvalidArguments) {
+                    ArgumentList usageArguments = subArguments.original();
+                    if (!sub.usage(member, channel, message, label, usageArguments))
+                        respond(reply, channel, responses.usage(message, usageArguments, sub.usageString));
+                }
+                return result instanceof CommandResult.Reply ? result : CommandResult.success();
             }
         }
 
-        arguments = new ArrayList<>(args);
-
-        if (execute == null || getMinArgs() > arguments.size())
+        if (execute == null || getMinArgs() > arguments.size()) {
+            metrics.invalidArguments();
             return usage(member, channel, message, label, arguments) ? CommandResult.success() : CommandResult.invalidArguments();
+        }
 
-        Object[] varargs = new Object[5 + customParams.size()];
+        // The parameter array is reused by later executions on this thread, unless this one is nested in another.
+        Object[] varargs = invocationArgs.get();
+        if (varargs == null) {
+            varargs = new Object[5 + customParams.size()];
+            for (int i = 5; i < varargs.length; i++)
+                varargs[i] = customParams.get(i - 5);
+        } else invocationArgs.set(null);
         populate(varargs, member, channel, message, label, arguments);
-        for (int i = 5; i < varargs.length; i++)
-            varargs[i] = customParams.get(i - 5);
+        boolean account = accountResources;
+        long cpu = account ? ThreadUsage.cpuTime() : 0;
+        long allocated = account ? ThreadUsage.allocatedBytes() : 0;
+        long start = System.nanoTime();
         try {
-            return (CommandResult) execute.invoke(instance, varargs);
+            CommandResult result = (CommandResult) execute.invoke(instance, varargs);
+            if (result instanceof CommandResult.InvalidArguments)
+                metrics.invalidArguments();
+            return result;
         } catch (IllegalAccessException | IllegalArgumentException e) {
+            metrics.exception();
             if (e instanceof IllegalArgumentException && !e.getMessage().equals("wrong number of arguments"))
                 throw new CommandExecuteException(label, e);
             else
                 throw MethodInvocationException.create(label, execute, varargs, true);
         } catch (InvocationTargetException target) {
-            target.getTargetException().printStackTrace();
+            metrics.exception();
+            ErrorReporter.report("command " + label, target.getTargetException());
         } catch (Exception e) {
-            e.printStackTrace();
+            metrics.exception();
+            ErrorReporter.report("command " + label, e);
             //throw new CommandExecuteException(label, e);
+        } finally {
+            populate(varargs, null, null, null, null, null);
+            invocationArgs.set(varargs);
+            metrics.executed(System.nanoTime() - start);
+            if (account)
+                metrics.consumed(cpu < 0 ? -1 : ThreadUsage.cpuTime() - cpu, allocated < 0 ? -1 : ThreadUsage.allocatedBytes() - allocated);
         }
         return null;
     }
@@ -237,6 +340,17 @@ public class LoadedCommand {
         return false;
     }
 
+    /**
+     * Check whether a member has the permissions required for this command.
+     *
+     * @param member the member
+     * @return true if the member has all permissions
+     */
+    boolean isPermitted(Member member) {
+        // JDA ignores Permission.UNKNOWN, but still works out the member's permissions, which allocates.
+        return !requiresPermission || member.hasPermission(permissionArray);
+    }
+
     // Getters
 
     /**
@@ -311,6 +425,88 @@ public class LoadedCommand {
         return minArgs;
     }
 
+    /**
+     * Get the timeout of this command in milliseconds. A timeout of 0 means the command never times out, a negative
+     * timeout means the handler's default is used.
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Get the maximum number of invocations of this command which may run at once.
+     *
+     * @return the maximum concurrency, 0 if it is not limited
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Get the maximum number of invocations which may wait for a running one to finish.
+     *
+     * @return the maximum number of queued invocations
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Get whether the results of this command are cached, see {@link Cacheable}.
+     *
+     * @return whether this command is cacheable
+     */
+    public boolean isCacheable() {
+        return cacheTtl > 0;
+    }
+
+    long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    ResponseCache.Key cacheKey(long guildId, long channelId, List<String> args) {
+        return new ResponseCache.Key(this, cacheByGuild ? guildId : 0, cacheByChannel ? channelId : 0, cacheByArgs ? String.join(" ", args) : null);
+    }
+
+    /**
+     * Get the execution mode this command declared.
+     *
+     * @return the execution mode
+     */
+    public Command.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the execution mode this command currently uses, which is {@link Command.Mode#POOL} for an inline command
+     * which exceeded the inline budget.
+     *
+     * @return the effective execution mode
+     */
+    public Command.Mode getEffectiveMode() {
+        return demoted ? Command.Mode.POOL : mode;
+    }
+
+    /**
+     * Get the name of the shared circuit breaker this command uses.
+     *
+     * @return the circuit name, empty if it does not use a shared breaker
+     */
+    public String getCircuit() {
+        return circuit;
+    }
+
+    /**
+     * Get the circuit breaker which guards this command, either its own or a shared one.
+     *
+     * @return the circuit breaker, or null if the command has none
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     /**
      * Gets whether this command is hidden from help.
      *
@@ -322,6 +518,14 @@ public class LoadedCommand {
         return hideInHelp;
     }
 
+    private void respond(Consumer<Message> reply, TextChannel channel, Message response) {
+        if (response == null)
+            return;
+        if (reply != null)
+            reply.accept(response);
+        else sendMessage.accept(channel, response);
+    }
+
     /**
      * Gets the classes of the direct children of this command.
      *
@@ -332,12 +536,13 @@ public class LoadedCommand {
     }
 
     /**
-     * Gets the direct children of this command.
+     * Gets the direct children of this command. The set is a snapshot, so it may be iterated while children are
+     * being registered.
      *
      * @return the children
      */
     public Set<LoadedCommand> getChildren() {
-        return children;
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(childArray)));
     }
 
     /**
@@ -348,7 +553,7 @@ public class LoadedCommand {
     public Set<LoadedCommand> getAllRecursive() {
         Set<LoadedCommand> all = new HashSet<>();
         all.add(this);
-        for (LoadedCommand child : children)
+        for (LoadedCommand child : childArray)
             all.addAll(child.getAllRecursive());
         return all;
     }
@@ -391,6 +596,24 @@ public class LoadedCommand {
         return usage != null;
     }
 
+    /**
+     * Gets the autocomplete index for the arguments of this command.
+     *
+     * @return the autocomplete index, or null if the command has no {@link Autocomplete} method
+     */
+    public AutocompleteIndex getAutocomplete() {
+        return autocomplete;
+    }
+
+    /**
+     * Get the latency histograms and outcome counters of this command.
+     *
+     * @return the metrics
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
     private void populate(Object[] varargs, Member member, TextChannel channel, Message message, String label, List<String> args) {
         varargs[0] = member;
         varargs[1] = channel;
@@ -0,0 +1,35 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the metrics of a {@link CommandHandler} and every command registered to it.
+ */
+public final class MetricsSnapshot {
+    private final long unknownCommands;
+    private final Map<String, CommandMetrics.Snapshot> commands;
+
+    MetricsSnapshot(long unknownCommands, Map<String, CommandMetrics.Snapshot> commands) {
+        this.unknownCommands = unknownCommands;
+        this.commands = commands;
+    }
+
+    /**
+     * Get the number of prefixed messages whose label did not match any command.
+     *
+     * @return the unknown command count
+     */
+    public long getUnknownCommands() {
+        return unknownCommands;
+    }
+
+    /**
+     * Get the metrics of every command, keyed by the primary labels of the command and its parents separated by
+     * spaces, e.g. {@code config set}, sorted by path.
+     *
+     * @return the command metrics
+     */
+    public Map<String, CommandMetrics.Snapshot> getCommands() {
+        return commands;
+    }
+}
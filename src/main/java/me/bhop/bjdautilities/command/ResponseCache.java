@@ -0,0 +1,136 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.command.result.CommandResult;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The results of {@link me.bhop.bjdautilities.command.annotation.Cacheable} commands, bounded by the estimated
+ * size of their responses. The least recently used results are evicted once the cache is full.
+ */
+final class ResponseCache {
+    // A rough size of an entry without its response, covering the key, entry and map node.
+    private static final int OVERHEAD = 128;
+
+    private final long capacity;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param capacity the maximum estimated size of all entries in bytes
+     */
+    ResponseCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get a cached result.
+     *
+     * @return the result, or null if there is no fresh result for the key
+     */
+    synchronized CommandResult get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (System.nanoTime() - entry.expires >= 0) {
+            remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    synchronized void put(Key key, CommandResult result, long ttl) {
+        long weight = weigh(result);
+        if (weight > capacity)
+            return;
+        remove(key);
+        entries.put(key, new Entry(result, System.nanoTime() + ttl, weight));
+        size += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > capacity && eldest.hasNext()) {
+            size -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    synchronized void invalidate(Predicate<Key> filter) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> entry = it.next();
+            if (filter.test(entry.getKey())) {
+                size -= entry.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null)
+            size -= old.weight;
+    }
+
+    private static long weigh(CommandResult result) {
+        long weight = OVERHEAD;
+        if (!(result instanceof CommandResult.Reply))
+            return weight;
+        Message message = ((CommandResult.Reply) result).getMessage();
+        if (message == null)
+            return weight;
+        weight += 2L * message.getContentRaw().length();
+        for (MessageEmbed embed : message.getEmbeds())
+            weight += OVERHEAD + 2L * embed.getLength();
+        return weight;
+    }
+
+    /**
+     * Identifies a cached result. Parts of the invocation which are not part of the command's cache key are left
+     * as 0 or null.
+     */
+    static final class Key {
+        final LoadedCommand command;
+        final long guild;
+        final long channel;
+        final String args;
+
+        Key(LoadedCommand command, long guild, long channel, String args) {
+            this.command = command;
+            this.guild = guild;
+            this.channel = channel;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return command == key.command && guild == key.guild && channel == key.channel && (args == null ? key.args == null : args.equals(key.args));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(command);
+            hash = hash * 31 + Long.hashCode(guild);
+            hash = hash * 31 + Long.hashCode(channel);
+            return hash * 31 + (args == null ? 0 : args.hashCode());
+        }
+    }
+
+    private static final class Entry {
+        private final CommandResult result;
+        private final long expires;
+        private final long weight;
+
+        private Entry(CommandResult result, long expires, long weight) {
+            this.result = result;
+            this.expires = expires;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per shard message dispatch counters for a {@link CommandHandler}.
+ *
+ * Every message which reaches the handler is counted as received, and every message which passes the
+ * handler's checks and is handed to a command is counted as dispatched.
+ */
+public class ShardStatistics {
+    // Counters are spread one cache line apart so shards on different event threads do not contend.
+    private static final int STRIDE = 8;
+
+    private final int shardCount;
+    private final AtomicLongArray received;
+    private final AtomicLongArray dispatched;
+
+    ShardStatistics(int shardCount) {
+        this.shardCount = shardCount;
+        this.received = new AtomicLongArray(shardCount * STRIDE);
+        this.dispatched = new AtomicLongArray(shardCount * STRIDE);
+    }
+
+    // Shards outside of the group have already been reported by ShardGroup.getShardId and are not counted.
+    void received(int shard) {
+        if (shard >= 0)
+            received.incrementAndGet(shard * STRIDE);
+    }
+
+    void dispatched(int shard) {
+        if (shard >= 0)
+            dispatched.incrementAndGet(shard * STRIDE);
+    }
+
+    /**
+     * Get the number of shards being tracked.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the number of messages received by the handler on a shard.
+     *
+     * @param shard the shard id
+     * @return the received message count
+     */
+    public long getReceived(int shard) {
+        return received.get(shard * STRIDE);
+    }
+
+    /**
+     * Get the number of messages dispatched to commands on a shard.
+     *
+     * @param shard the shard id
+     * @return the dispatched message count
+     */
+    public long getDispatched(int shard) {
+        return dispatched.get(shard * STRIDE);
+    }
+
+    /**
+     * Get the number of messages received by the handler across all shards.
+     *
+     * @return the total received message count
+     */
+    public long getTotalReceived() {
+        long total = 0;
+        for (int i = 0; i < shardCount; i++)
+            total += getReceived(i);
+        return total;
+    }
+
+    /**
+     * Get the number of messages dispatched to commands across all shards.
+     *
+     * @return the total dispatched message count
+     */
+    public long getTotalDispatched() {
+        long total = 0;
+        for (int i = 0; i < shardCount; i++)
+            total += getDispatched(i);
+        return total;
+    }
+}
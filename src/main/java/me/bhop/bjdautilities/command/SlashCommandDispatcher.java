@@ -0,0 +1,408 @@
+package me.bhop.bjdautilities.command;
+
+import me.bhop.bjdautilities.command.response.CommandResponses;
+import me.bhop.bjdautilities.exception.CommandInitException;
+import me.bhop.bjdautilities.metrics.jfr.FlightEvents;
+import me.bhop.bjdautilities.util.ShardGroup;
+import me.bhop.bjdautilities.util.ThrowingRunnable;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.ChannelType;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandGroupData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Routes {@link SlashCommandInteractionEvent}s into the {@link LoadedCommand} tree of a {@link CommandHandler}.
+ *
+ * Slash command definitions are derived from the {@link me.bhop.bjdautilities.command.annotation.Command} annotations
+ * of the registered commands. Each root command becomes a slash command, its children become subcommands and
+ * grandchildren become subcommands of a subcommand group. Anything nested deeper cannot be expressed as a slash
+ * command and is left out. Commands which take arguments receive them through a single string option, which is
+ * split on spaces the same way a message would be, so existing execute methods work unchanged. There is no
+ * original {@link Message} for an interaction, so commands, responses and result handlers are given a read-only
+ * {@link InteractionMessage} with the interaction's id, channel, author and the command written out as its content,
+ * e.g. {@code /ban user reason}. Requests which would act on that message, such as deleting or reacting to it,
+ * throw an {@link UnsupportedOperationException}; the interaction itself is reachable through
+ * {@link InteractionMessage#getHook()}.
+ *
+ * Commands with an {@link me.bhop.bjdautilities.command.annotation.Autocomplete} method have autocomplete enabled
+ * on their arguments option, and autocomplete interactions are answered directly from the command's
+ * {@link AutocompleteIndex} on the event thread.
+ *
+ * This should be built after all commands have been registered to the handler.
+ */
+public class SlashCommandDispatcher extends ListenerAdapter {
+    /**
+     * The name of the string option which carries the command arguments.
+     */
+    public static final String ARGUMENTS_OPTION = "arguments";
+
+    private static final Pattern VALID_NAME = Pattern.compile("^[\\w-]{1,32}$");
+    private static final int MAX_DESCRIPTION = 100;
+
+    private final ShardGroup shards;
+    private final CommandHandler handler;
+    private final boolean sync;
+    private final Path syncFile;
+
+    private volatile Map<String, Route> routes = Collections.emptyMap();
+
+    private SlashCommandDispatcher(ShardGroup shards, CommandHandler handler, boolean sync, Path syncFile) {
+        this.shards = shards;
+        this.handler = handler;
+        this.sync = sync;
+        this.syncFile = syncFile;
+    }
+
+    @Override
+    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+        Route route = routes.get(event.getCommandPath());
+        if (route == null)
+            return;
+
+        // Acknowledge right away, the actual execution may take longer than the interaction deadline.
+        event.deferReply().queue();
+        InteractionHook hook = event.getHook();
+        CommandResponses responses = handler.getResponses();
+
+        String arguments = event.getOption(ARGUMENTS_OPTION, "", OptionMapping::getAsString);
+        Message message = standIn(event, arguments);
+        if (!event.isFromGuild() || event.getChannelType() != ChannelType.TEXT) {
+            Message m = responses.unknownError(message);
+            if (m != null)
+                hook.sendMessage(m).queue();
+            return;
+        }
+
+        Guild guild = event.getGuild();
+        Member member = event.getMember();
+        TextChannel channel = event.getTextChannel();
+        int responseLifetime = (int) handler.getResponseLifespan(guild);
+
+        long guildId = guild.getIdLong();
+        long trace = event.getIdLong();
+        long queued = System.nanoTime();
+        Object queue = FlightEvents.beginPhase();
+        handler.submit(new ThrowingRunnable(() -> {
+            long started = System.nanoTime();
+            FlightEvents.commitPhase(queue, "queue", guildId, null, trace);
+            FlightEvents.setTrace(trace);
+            AtomicBoolean replied = new AtomicBoolean(false);
+            // Commands which respond in the channel themselves would otherwise leave the deferred reply behind.
+            Runnable done = () -> {
+                if (!replied.get())
+                    hook.deleteOriginal().queue();
+            };
+            boolean handedOff = false;
+            Consumer<Message> reply = m -> {
+                if (m == null)
+                    return;
+                replied.set(true);
+                hook.sendMessage(m).queue(sent -> {
+                    if (responseLifetime != -1)
+                        sent.delete().queueAfter(responseLifetime, TimeUnit.SECONDS);
+                });
+            };
+
+            try {
+                LoadedCommand cmd = route.command;
+                cmd.getMetrics().queued(started - queued);
+                String label = cmd.getLabels().get(0);
+                List<String> args = split(arguments);
+                Object phase = FlightEvents.beginPhase();
+                boolean permitted = member.hasPermission(route.permissions);
+                FlightEvents.commitPhase(phase, "permission", guildId, label, trace);
+                if (!permitted) {
+                    cmd.getMetrics().permissionDenied();
+                    reply.accept(responses.noPerms(message, cmd.getPermission()));
+                    return;
+                }
+
+                if (cmd.getMinArgs() > args.size()) {
+                    cmd.getMetrics().invalidArguments();
+                    reply.accept(responses.notEnoughArguments(message, cmd.getMinArgs(), args));
+                    return;
+                }
+
+                handedOff = true;
+                handler.executeBounded(cmd, member, channel, message, label, args, guildId, trace, reply, done);
+            } finally {
+                FlightEvents.setTrace(0);
+                if (!handedOff)
+                    done.run();
+            }
+        }));
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+        Route route = routes.get(event.getCommandPath());
+        if (route == null || route.command.getAutocomplete() == null || !ARGUMENTS_OPTION.equals(event.getFocusedOption().getName()))
+            return;
+        event.replyChoices(route.command.getAutocomplete().complete(event.getFocusedOption().getValue())).queue();
+    }
+
+    /**
+     * Rebuild the slash command routes from the commands currently registered to the handler and, if enabled,
+     * synchronize the derived definitions with Discord.
+     *
+     * Only definitions whose content hash differs from the last synchronized version stored in the sync file are
+     * upserted, and commands which no longer exist are deleted. This blocks until Discord has accepted the changes.
+     */
+    public void sync() {
+        Map<String, Route> routes = new HashMap<>();
+        Map<String, SlashCommandData> definitions = new TreeMap<>();
+        for (LoadedCommand root : handler.getRootCommands()) {
+            SlashCommandData data = define(root, routes);
+            definitions.put(data.getName(), data);
+        }
+        this.routes = routes;
+
+        if (!sync)
+            return;
+
+        // Global commands belong to the application, so any shard can manage them.
+        JDA jda = shards.getShards().get(0);
+        Properties synced = load();
+        Properties updated = new Properties();
+        for (SlashCommandData data : definitions.values()) {
+            String hash = hash(data);
+            if (!hash.equals(synced.getProperty(data.getName())))
+                jda.upsertCommand(data).complete();
+            updated.setProperty(data.getName(), hash);
+        }
+
+        if (!updated.keySet().containsAll(synced.keySet())) {
+            for (Command command : jda.retrieveCommands().complete())
+                if (synced.containsKey(command.getName()) && !updated.containsKey(command.getName()))
+                    command.delete().complete();
+        }
+
+        save(updated);
+    }
+
+    private SlashCommandData define(LoadedCommand root, Map<String, Route> routes) {
+        String name = name(root);
+        SlashCommandData data = Commands.slash(name, description(root));
+        Route rootRoute = new Route(root, null);
+        if (root.getChildren().isEmpty()) {
+            data.addOptions(arguments(root));
+            routes.put(name, rootRoute);
+            return data;
+        }
+
+        for (LoadedCommand child : root.getChildren()) {
+            String childName = name(child);
+            Route childRoute = new Route(child, rootRoute);
+            if (child.getChildren().isEmpty()) {
+                data.addSubcommands(subcommand(child, childName));
+                routes.put(name + "/" + childName, childRoute);
+                continue;
+            }
+
+            SubcommandGroupData group = new SubcommandGroupData(childName, description(child));
+            for (LoadedCommand grandchild : child.getChildren()) {
+                String grandchildName = name(grandchild);
+                group.addSubcommands(subcommand(grandchild, grandchildName));
+                routes.put(name + "/" + childName + "/" + grandchildName, new Route(grandchild, childRoute));
+            }
+            data.addSubcommandGroups(group);
+        }
+        return data;
+    }
+
+    private SubcommandData subcommand(LoadedCommand command, String name) {
+        return new SubcommandData(name, description(command)).addOptions(arguments(command));
+    }
+
+    private OptionData arguments(LoadedCommand command) {
+        return new OptionData(OptionType.STRING, ARGUMENTS_OPTION, argumentsDescription(command), command.getMinArgs() > 0, command.getAutocomplete() != null);
+    }
+
+    private String name(LoadedCommand command) {
+        String name = command.getLabels().get(0).toLowerCase();
+        if (!VALID_NAME.matcher(name).matches())
+            throw new CommandInitException(command.getCommandClass(), "'" + name + "' is not a valid slash command name.");
+        return name;
+    }
+
+    private String description(LoadedCommand command) {
+        String description = command.getDescription().isEmpty() ? command.getLabels().get(0) : command.getDescription();
+        return description.length() > MAX_DESCRIPTION ? description.substring(0, MAX_DESCRIPTION) : description;
+    }
+
+    private String argumentsDescription(LoadedCommand command) {
+        String usage = command.getUsageString().isEmpty() ? "The command arguments" : command.getUsageString();
+        return usage.length() > MAX_DESCRIPTION ? usage.substring(0, MAX_DESCRIPTION) : usage;
+    }
+
+    /**
+     * Create the message which stands in for an interaction, since commands and responses expect one.
+     */
+    private static Message standIn(SlashCommandInteractionEvent event, String arguments) {
+        String content = "/" + event.getCommandPath().replace('/', ' ') + (arguments.isEmpty() ? "" : " " + arguments);
+        return new InteractionMessage(event, content);
+    }
+
+    /**
+     * Split the arguments option with the same tokenizer as message content, so e.g. repeated spaces give the same
+     * empty arguments they would in a message.
+     */
+    private static List<String> split(String arguments) {
+        // The leading space stands in for the label, which is never part of the option.
+        return new ArgumentList(CommandHandler.tokenize(" " + arguments), 1);
+    }
+
+    private static String hash(SlashCommandData data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data.toData().toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Properties load() {
+        Properties properties = new Properties();
+        if (!Files.exists(syncFile))
+            return properties;
+        try (InputStream in = Files.newInputStream(syncFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+
+    private void save(Properties properties) {
+        try (OutputStream out = Files.newOutputStream(syncFile)) {
+            properties.store(out, "Last synchronized slash command definitions");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A resolved slash command path.
+     */
+    private static class Route {
+        private final LoadedCommand command;
+        private final List<Permission> permissions;
+
+        private Route(LoadedCommand command, Route parent) {
+            this.command = command;
+            // Parents guard their children in message dispatch, so the whole chain is checked here as well.
+            List<Permission> permissions = new ArrayList<>(command.getPermission());
+            if (parent != null)
+                permissions.addAll(parent.permissions);
+            this.permissions = permissions;
+        }
+    }
+
+    /**
+     * A convenient builder for creating {@link SlashCommandDispatcher}s.
+     */
+    public static class Builder {
+        private final ShardGroup shards;
+        private final CommandHandler handler;
+        private boolean sync = true;
+        private Path syncFile = Paths.get("slash-commands.properties");
+
+        /**
+         * Create a new builder instance which listens on the same shards as the handler.
+         *
+         * @param handler the handler whose commands should be exposed
+         */
+        public Builder(CommandHandler handler) {
+            this(handler.getShards(), handler);
+        }
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param jda the {@link JDA} instance
+         * @param handler the handler whose commands should be exposed
+         */
+        public Builder(JDA jda, CommandHandler handler) {
+            this(ShardGroup.of(jda), handler);
+        }
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param shards the shards to listen on
+         * @param handler the handler whose commands should be exposed
+         */
+        public Builder(ShardGroup shards, CommandHandler handler) {
+            this.shards = shards;
+            this.handler = handler;
+        }
+
+        /**
+         * Set whether the derived definitions should be synchronized with Discord when built.
+         *
+         * This is enabled by default. When disabled, the commands must already exist on Discord.
+         *
+         * @param sync whether to synchronize the commands
+         */
+        public Builder setSyncCommands(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        /**
+         * Set the file which stores the hashes of the last synchronized definitions.
+         *
+         * @param syncFile the file path
+         */
+        public Builder setSyncFile(Path syncFile) {
+            this.syncFile = syncFile;
+            return this;
+        }
+
+        /**
+         * Build the {@link SlashCommandDispatcher}, synchronize its commands and start listening for interactions.
+         *
+         * @return the dispatcher
+         */
+        public SlashCommandDispatcher build() {
+            SlashCommandDispatcher dispatcher = new SlashCommandDispatcher(shards, handler, sync, syncFile);
+            dispatcher.sync();
+            shards.addEventListener(dispatcher);
+            return dispatcher;
+        }
+    }
+}
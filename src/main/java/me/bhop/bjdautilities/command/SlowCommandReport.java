@@ -0,0 +1,103 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.List;
+
+/**
+ * A command execution which exceeded the slow command threshold, together with stack samples of the thread which
+ * was running it.
+ */
+public final class SlowCommandReport {
+    private final LoadedCommand command;
+    private final String label;
+    private final long guildId;
+    private final long traceId;
+    private final String threadName;
+    private final long elapsed;
+    private final List<StackTraceElement[]> samples;
+    private final int suppressed;
+
+    SlowCommandReport(LoadedCommand command, String label, long guildId, long traceId, String threadName, long elapsed, List<StackTraceElement[]> samples, int suppressed) {
+        this.command = command;
+        this.label = label;
+        this.guildId = guildId;
+        this.traceId = traceId;
+        this.threadName = threadName;
+        this.elapsed = elapsed;
+        this.samples = samples;
+        this.suppressed = suppressed;
+    }
+
+    /**
+     * Get the root command which was invoked.
+     *
+     * @return the command
+     */
+    public LoadedCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * Get the label the command was invoked with.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Get the id of the guild the command was invoked in.
+     *
+     * @return the guild id
+     */
+    public long getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Get the id of the message or interaction which invoked the command.
+     *
+     * @return the trace id
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Get the name of the thread which was running the command.
+     *
+     * @return the thread name
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Get how long the command had been running when the last sample was taken.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Get the stack samples, oldest first. There may be fewer samples than configured if the command finished while
+     * it was being sampled.
+     *
+     * @return the stack samples
+     */
+    public List<StackTraceElement[]> getSamples() {
+        return samples;
+    }
+
+    /**
+     * Get the number of slow executions which were not reported since the previous report because of the report
+     * limit.
+     *
+     * @return the suppressed report count
+     */
+    public int getSuppressed() {
+        return suppressed;
+    }
+}
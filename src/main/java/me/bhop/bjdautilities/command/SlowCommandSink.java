@@ -0,0 +1,45 @@
+package me.bhop.bjdautilities.command;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives reports of command executions which took longer than the slow command threshold of a
+ * {@link CommandHandler}, see {@link CommandHandler.Builder#setSlowCommandThreshold(long, TimeUnit)}.
+ *
+ * Reports are delivered on the watchdog thread, so a sink should hand them off rather than block.
+ */
+@FunctionalInterface
+public interface SlowCommandSink {
+
+    /**
+     * Handle a slow command report.
+     *
+     * @param report the report
+     */
+    void report(SlowCommandReport report);
+
+    /**
+     * Get a sink which prints reports and their stack samples to {@link System#err}.
+     *
+     * @return the sink
+     */
+    static SlowCommandSink stderr() {
+        return report -> {
+            StringBuilder out = new StringBuilder();
+            out.append("Command '").append(report.getLabel()).append("' has been running on ").append(report.getThreadName())
+                    .append(" for ").append(TimeUnit.NANOSECONDS.toMillis(report.getElapsed())).append("ms");
+            if (report.getTraceId() != 0)
+                out.append(" (message ").append(report.getTraceId()).append(')');
+            if (report.getSuppressed() > 0)
+                out.append(", ").append(report.getSuppressed()).append(" earlier reports suppressed");
+            out.append(System.lineSeparator());
+            int sample = 0;
+            for (StackTraceElement[] stack : report.getSamples()) {
+                out.append("  sample ").append(++sample).append(':').append(System.lineSeparator());
+                for (StackTraceElement element : stack)
+                    out.append("    at ").append(element).append(System.lineSeparator());
+            }
+            System.err.print(out);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package me.bhop.bjdautilities.command;
+
+/**
+ * How the workers of a ring buffer dispatch engine wait for new messages, see
+ * {@link CommandHandler.Builder#setRingBuffer(int, int, WaitStrategy)}. The strategies trade CPU usage while idle
+ * against the latency of picking up a message.
+ */
+public enum WaitStrategy {
+    /**
+     * Spin without pausing. This has the lowest latency, but keeps every worker on a core at all times.
+     */
+    BUSY_SPIN,
+    /**
+     * Spin briefly, then yield to other threads between checks.
+     */
+    YIELDING,
+    /**
+     * Spin and yield briefly, then sleep for short intervals between checks. Uses little CPU while idle at the cost
+     * of up to a fraction of a millisecond of latency.
+     */
+    SLEEPING,
+    /**
+     * Block until a message is published. Uses no CPU while idle, but publishing wakes a worker through a lock.
+     */
+    BLOCKING
+}
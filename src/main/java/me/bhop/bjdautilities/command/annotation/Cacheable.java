@@ -0,0 +1,80 @@
+/*
+ * This file is part of bJdaUtilities, licensed under the MIT License.
+ *
+ * Copyright (c) 2019 bhop_ (Matt Worzala)
+ * Copyright (c) 2019 contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.bhop.bjdautilities.command.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only command whose result may be reused for a while instead of executing it again.
+ *
+ * Only {@link me.bhop.bjdautilities.command.result.CommandResult#reply(net.dv8tion.jda.api.entities.Message)}
+ * results are cached, any other result executes the command again on the next invocation. A command which sends
+ * its response itself should return it as a reply result instead. Registering a cacheable command whose execute
+ * method cannot return a reply result, e.g. one declared to return {@code void}, fails. Permissions and arguments
+ * are still checked on every invocation.
+ *
+ * Cached results can be dropped early through
+ * {@link me.bhop.bjdautilities.command.CommandHandler#invalidateCache(Class)}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+    /**
+     * How long a result stays cached in milliseconds.
+     *
+     * @return the time to live of a result
+     */
+    long ttl();
+
+    /**
+     * What a cached result is shared by. Invocations only share a result if they match in every key, with no keys
+     * a single result is shared by every invocation.
+     *
+     * @return the cache keys
+     */
+    Key[] key() default Key.GUILD;
+
+    /**
+     * The parts of an invocation which can separate cached results.
+     */
+    enum Key {
+        /**
+         * The guild the command is invoked in.
+         */
+        GUILD,
+        /**
+         * The channel the command is invoked in.
+         */
+        CHANNEL,
+        /**
+         * The arguments the command is invoked with.
+         */
+        ARGS
+    }
+}
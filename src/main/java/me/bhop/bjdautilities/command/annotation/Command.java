@@ -114,4 +114,90 @@ public @interface Command {
      * @return if this command is hidden from the help command.
      */
     boolean hideInHelp() default false;
+
+    /**
+     * The maximum time in milliseconds this command may run before it is abandoned and the sender is told that it
+     * timed out. Sub-commands run within the timeout of the command they were invoked through.
+     *
+     * A timeout of 0 disables it, a negative timeout uses the default of the
+     * {@link me.bhop.bjdautilities.command.CommandHandler}.
+     *
+     * @return the timeout of this command in milliseconds
+     */
+    long timeout() default -1;
+
+    /**
+     * The maximum number of invocations of this command which may run at once, 0 for no limit. This keeps a heavy
+     * command from taking up every thread of the handler.
+     *
+     * Invocations past the limit wait for a running one to finish, up to {@link #maxQueued()} of them, further
+     * invocations are rejected. Sub-commands share the limit of the command they were invoked through.
+     *
+     * @return the maximum concurrency of this command
+     */
+    int maxConcurrency() default 0;
+
+    /**
+     * The maximum number of invocations which may wait while {@link #maxConcurrency()} are running. Waiting
+     * invocations do not hold on to a thread. This is ignored if the concurrency is not limited.
+     *
+     * @return the maximum number of queued invocations
+     */
+    int maxQueued() default 0;
+
+    /**
+     * The number of consecutive failed executions after which this command is disabled for {@link #coolDown()},
+     * 0 to never disable it. An execution fails if it throws, times out or otherwise ends in an unknown error.
+     *
+     * This is ignored if the command uses a shared {@link #circuit()}.
+     *
+     * @return the failure threshold of this command
+     */
+    int failureThreshold() default 0;
+
+    /**
+     * The time in milliseconds this command stays disabled once {@link #failureThreshold()} has been reached.
+     * Afterwards a single invocation is let through to check whether the command works again.
+     *
+     * @return the cool-down of this command in milliseconds
+     */
+    long coolDown() default 30000;
+
+    /**
+     * The name of a {@link me.bhop.bjdautilities.command.CircuitBreaker} registered on the handler which this
+     * command shares with other commands, e.g. every command using the same database.
+     *
+     * @return the name of the shared circuit breaker
+     */
+    String circuit() default "";
+
+    /**
+     * Where this command is executed. Cheap commands can run {@link Mode#INLINE} to skip the hand-off to the
+     * command executor.
+     *
+     * This only applies to handlers which execute commands concurrently.
+     *
+     * @return the execution mode of this command
+     */
+    Mode mode() default Mode.POOL;
+
+    /**
+     * Where a command is executed.
+     */
+    enum Mode {
+        /**
+         * Directly on the thread which received the event. The command must finish within the handler's inline
+         * budget, otherwise it is timed out and moved to the command executor.
+         */
+        INLINE,
+        /**
+         * On the handler's shared command executor.
+         */
+        POOL,
+        /**
+         * On a new virtual thread, for commands which mostly wait on blocking calls. On Java versions without
+         * virtual threads this is the same as {@link #POOL}.
+         */
+        VIRTUAL
+    }
 }
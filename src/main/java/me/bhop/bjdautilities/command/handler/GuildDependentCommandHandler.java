@@ -4,12 +4,14 @@ import me.bhop.bjdautilities.command.CommandHandler;
 import me.bhop.bjdautilities.command.LoadedCommand;
 import me.bhop.bjdautilities.command.response.CommandResponses;
 import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.util.ShardGroup;
 import me.bhop.bjdautilities.util.TriConsumer;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GuildDependentCommandHandler extends CommandHandler {
     private final String defaultPrefix;
@@ -18,7 +20,56 @@ public class GuildDependentCommandHandler extends CommandHandler {
     private final long defaultCommandLifespan, defaultResponseLifespan;
     private final Map<Long, Long> commandLifespans, responseLifespans;
     private Map<Long, List<Long>> allowedCommandChannels;
+    // The number of guilds using each prefix other than the default, guarded by this.
+    private final Map<String, Integer> prefixUses = new HashMap<>();
 
+    /**
+     * Create a new handler.
+     *
+     * The per guild maps are copied, so changing them afterwards does not affect the handler. Earlier versions used
+     * the given maps directly. The handler's own maps are returned by {@link #getPrefixes()},
+     * {@link #getCommandLifespans()}, {@link #getResponseLifespans()} and
+     * {@link #getAllGuildsAllowedCommandChannels()}.
+     *
+     * @throws IllegalArgumentException if any of the maps contains a null key or value
+     */
+    public GuildDependentCommandHandler(CommandHandler.Builder base,
+                                        String defaultPrefix, long defaultCommandLifespan, long defaultResponseLifespan,
+                                        Map<Long, String> prefixes, Map<Long, Long> commandLifespans, Map<Long, Long> responseLifespans, Map<Long, Boolean> sendResultsAsReplies, Map<Long, Boolean> tagUserInReply, Map<Long, List<Long>> allowedCommandChannels) {
+        super(base);
+        // The settings are read by every dispatch and may be changed from any thread, e.g. by a prefix command.
+        this.defaultPrefix = defaultPrefix;
+        this.prefixes = copy(prefixes, "prefix");
+        for (String prefix : prefixes.values())
+            prefixUses.merge(prefix, 1, Integer::sum);
+        this.defaultCommandLifespan = defaultCommandLifespan;
+        this.commandLifespans = copy(commandLifespans, "command lifespan");
+        this.defaultResponseLifespan = defaultResponseLifespan;
+        this.responseLifespans = copy(responseLifespans, "response lifespan");
+        this.sendResultsAsReplies = copy(sendResultsAsReplies, "reply setting");
+        this.tagUsersInReplies = copy(tagUserInReply, "reply tag setting");
+        this.allowedCommandChannels = copy(allowedCommandChannels, "allowed command channels");
+    }
+
+    /**
+     * Copy a per guild setting into a concurrent map, which cannot hold nulls.
+     */
+    private static <T> Map<Long, T> copy(Map<Long, T> settings, String name) {
+        Map<Long, T> copy = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, T> setting : settings.entrySet()) {
+            if (setting.getKey() == null)
+                throw new IllegalArgumentException("The guild id of a " + name + " cannot be null!");
+            if (setting.getValue() == null)
+                throw new IllegalArgumentException("The " + name + " of guild " + setting.getKey() + " cannot be null!");
+            copy.put(setting.getKey(), setting.getValue());
+        }
+        return copy;
+    }
+
+    /**
+     * @deprecated use {@link CommandHandler.Builder#guildDependent()}
+     */
+    @Deprecated
     public GuildDependentCommandHandler(JDA jda,
                                         boolean concurrent,
                                         CommandResponses responses,
@@ -26,16 +77,23 @@ public class GuildDependentCommandHandler extends CommandHandler {
                                         List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results,
                                         String defaultPrefix, long defaultCommandLifespan, long defaultResponseLifespan,
                                         Map<Long, String> prefixes, Map<Long, Long> commandLifespans, Map<Long, Long> responseLifespans, boolean help, int entriesPerPage, boolean helpPermissions, Map<Long, Boolean> sendResultsAsReplies, Map<Long, Boolean> tagUserInReply, Map<Long, List<Long>> allowedCommandChannels) {
-        super(jda, concurrent, responses, commands, params, results, help, entriesPerPage, helpPermissions);
-        this.defaultPrefix = defaultPrefix;
-        this.prefixes = prefixes;
-        this.defaultCommandLifespan = defaultCommandLifespan;
-        this.commandLifespans = commandLifespans;
-        this.defaultResponseLifespan = defaultResponseLifespan;
-        this.responseLifespans = responseLifespans;
-        this.sendResultsAsReplies = sendResultsAsReplies;
-        this.tagUsersInReplies = tagUserInReply;
-        this.allowedCommandChannels = allowedCommandChannels;
+        this(ShardGroup.of(jda), concurrent, responses, commands, params, results, defaultPrefix, defaultCommandLifespan, defaultResponseLifespan, prefixes, commandLifespans, responseLifespans, help, entriesPerPage, helpPermissions, sendResultsAsReplies, tagUserInReply, allowedCommandChannels);
+    }
+
+    /**
+     * @deprecated use {@link CommandHandler.Builder#guildDependent()}
+     */
+    @Deprecated
+    public GuildDependentCommandHandler(ShardGroup shards,
+                                        boolean concurrent,
+                                        CommandResponses responses,
+                                        Set<LoadedCommand> commands,
+                                        List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results,
+                                        String defaultPrefix, long defaultCommandLifespan, long defaultResponseLifespan,
+                                        Map<Long, String> prefixes, Map<Long, Long> commandLifespans, Map<Long, Long> responseLifespans, boolean help, int entriesPerPage, boolean helpPermissions, Map<Long, Boolean> sendResultsAsReplies, Map<Long, Boolean> tagUserInReply, Map<Long, List<Long>> allowedCommandChannels) {
+        this(legacyBuilder(shards, concurrent, responses, params, results, help, entriesPerPage, helpPermissions),
+                defaultPrefix, defaultCommandLifespan, defaultResponseLifespan, prefixes, commandLifespans, responseLifespans, sendResultsAsReplies, tagUserInReply, allowedCommandChannels);
+        adopt(commands);
     }
 
     public void addAllowedChannel(Guild guild, Long... ids) {
@@ -46,17 +104,48 @@ public class GuildDependentCommandHandler extends CommandHandler {
         this.allowedCommandChannels.remove(guild.getIdLong(), Arrays.asList(ids));
     }
 
+    /**
+     * Get the channels commands are allowed in, keyed by guild id. This is the handler's own copy of the channels
+     * it was built with, changes to it take effect immediately.
+     *
+     * @return the allowed command channels
+     */
     public Map<Long, List<Long>> getAllGuildsAllowedCommandChannels() {
         return this.allowedCommandChannels;
     }
 
     @Override
     protected List<Long> getAllowedCommandChannels(Guild guild) {
-        return this.allowedCommandChannels.getOrDefault(guild.getIdLong(), new ArrayList<>());
+        if (allowedCommandChannels.isEmpty())
+            return Collections.emptyList();
+        return this.allowedCommandChannels.getOrDefault(guild.getIdLong(), Collections.emptyList());
+    }
+
+    public synchronized void setPrefix(Guild guild, String prefix) {
+        String old = prefixes.put(guild.getIdLong(), prefix);
+        if (prefix.equals(old))
+            return;
+        String removed = old != null && prefixUses.merge(old, -1, Integer::sum) == 0 ? old : null;
+        if (removed != null)
+            prefixUses.remove(removed);
+        String added = prefixUses.merge(prefix, 1, Integer::sum) == 1 ? prefix : null;
+        // The default prefix is always in use.
+        prefixChanged(defaultPrefix.equals(removed) ? null : removed, defaultPrefix.equals(added) ? null : added);
     }
 
-    public void setPrefix(Guild guild, String prefix) {
-        prefixes.put(guild.getIdLong(), prefix);
+    /**
+     * Remove the prefix of a guild, so it uses the default prefix again.
+     *
+     * @param guild the guild
+     */
+    public synchronized void removePrefix(Guild guild) {
+        String old = prefixes.remove(guild.getIdLong());
+        if (old == null)
+            return;
+        String removed = prefixUses.merge(old, -1, Integer::sum) == 0 ? old : null;
+        if (removed != null)
+            prefixUses.remove(removed);
+        prefixChanged(defaultPrefix.equals(removed) ? null : removed, null);
     }
 
     @Override
@@ -64,6 +153,13 @@ public class GuildDependentCommandHandler extends CommandHandler {
         return prefixes.getOrDefault(guild.getIdLong(), defaultPrefix);
     }
 
+    @Override
+    protected synchronized Collection<String> getKnownPrefixes() {
+        Set<String> known = new HashSet<>(prefixUses.keySet());
+        known.add(defaultPrefix);
+        return known;
+    }
+
     @Override
     protected long getCommandLifespan(Guild guild) {
         return commandLifespans.getOrDefault(guild.getIdLong(), defaultCommandLifespan);
@@ -84,28 +180,42 @@ public class GuildDependentCommandHandler extends CommandHandler {
         return tagUsersInReplies.getOrDefault(guild.getIdLong(), false);
     }
 
+    /**
+     * Get the guild specific prefixes, keyed by guild id.
+     *
+     * This is the handler's own copy of the prefixes it was built with. Modifying this map directly is deprecated.
+     * Changes made to it are still used for dispatch, but bypass the tracking of which prefixes are in use, so e.g. a
+     * {@link me.bhop.bjdautilities.command.CompositeCommandHandler} does not route a newly added prefix to this
+     * handler. Use {@link #setPrefix(Guild, String)} and {@link #removePrefix(Guild)} instead.
+     *
+     * @return the guild prefixes
+     */
     public Map<Long, String> getPrefixes() {
         return prefixes;
     }
 
+    /**
+     * Get the guild specific command lifespans in seconds, keyed by guild id. This is the handler's own copy of the
+     * lifespans it was built with, changes to it take effect immediately.
+     *
+     * @return the command lifespans
+     */
     public Map<Long, Long> getCommandLifespans() {
         return commandLifespans;
     }
 
+    /**
+     * Get the guild specific response lifespans in seconds, keyed by guild id. This is the handler's own copy of the
+     * lifespans it was built with, changes to it take effect immediately.
+     *
+     * @return the response lifespans
+     */
     public Map<Long, Long> getResponseLifespans() {
         return responseLifespans;
     }
 
     public static class Builder {
-        private final JDA jda;
-        private final boolean concurrent;
-        private final CommandResponses responses;
-        private final Set<LoadedCommand> commands;
-        private final List<Object> params;
-        private final Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results;
-        private final boolean help;
-        private final int entriesPerPage;
-        private final boolean helpPermission;
+        private final CommandHandler.Builder base;
         private String defaultPrefix = "!";
         private Map<Long, String> prefixes = new HashMap<>();
         private long defaultCommandLifespan = 10;
@@ -115,16 +225,27 @@ public class GuildDependentCommandHandler extends CommandHandler {
         private Map<Long, Boolean> sendResultsAsReplies = new HashMap<>(), tagUsersInReplies = new HashMap<>();
         private Map<Long, List<Long>> allowedCommandChannels = new HashMap<>();
 
+        private Set<LoadedCommand> commands = Collections.emptySet();
+
+        public Builder(CommandHandler.Builder base) {
+            this.base = base;
+        }
+
+        /**
+         * @deprecated use {@link CommandHandler.Builder#guildDependent()}
+         */
+        @Deprecated
         public Builder(JDA jda, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
-            this.jda = jda;
-            this.concurrent = concurrent;
-            this.responses = responses;
+            this(ShardGroup.of(jda), concurrent, responses, commands, params, results, help, entriesPerPage, helpPermissions);
+        }
+
+        /**
+         * @deprecated use {@link CommandHandler.Builder#guildDependent()}
+         */
+        @Deprecated
+        public Builder(ShardGroup shards, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
+            this(legacyBuilder(shards, concurrent, responses, params, results, help, entriesPerPage, helpPermissions));
             this.commands = commands;
-            this.params = params;
-            this.results = results;
-            this.help = help;
-            this.entriesPerPage = entriesPerPage;
-            this.helpPermission = helpPermissions;
         }
 
         /**
@@ -198,8 +319,16 @@ public class GuildDependentCommandHandler extends CommandHandler {
             return this;
         }
 
+        /**
+         * Build the handler. The per guild settings are copied, so later changes to this builder do not affect it.
+         *
+         * @return the handler
+         * @throws IllegalArgumentException if a per guild setting is null
+         */
         public GuildDependentCommandHandler build() {
-            return new GuildDependentCommandHandler(jda, concurrent, responses, commands, params, results, defaultPrefix, defaultCommandLifespan, defaultResponseLifespan, prefixes, commandLifespans, responseLifespans, help, entriesPerPage, helpPermission, sendResultsAsReplies, tagUsersInReplies, allowedCommandChannels);
+            GuildDependentCommandHandler handler = new GuildDependentCommandHandler(base, defaultPrefix, defaultCommandLifespan, defaultResponseLifespan, prefixes, commandLifespans, responseLifespans, sendResultsAsReplies, tagUsersInReplies, allowedCommandChannels);
+            handler.adopt(commands);
+            return handler;
         }
     }
 }
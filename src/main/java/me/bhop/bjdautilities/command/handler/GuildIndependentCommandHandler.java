@@ -4,6 +4,7 @@ import me.bhop.bjdautilities.command.CommandHandler;
 import me.bhop.bjdautilities.command.LoadedCommand;
 import me.bhop.bjdautilities.command.response.CommandResponses;
 import me.bhop.bjdautilities.command.result.CommandResult;
+import me.bhop.bjdautilities.util.ShardGroup;
 import me.bhop.bjdautilities.util.TriConsumer;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -11,28 +12,53 @@ import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class GuildIndependentCommandHandler extends CommandHandler {
-    private String prefix;
+    private volatile String prefix;
     private final long commandLifespan, responseLifespan;
     private boolean sendResultsAsReplies, tagUserInReplies;
     private Map<Long, List<Long>> allowedCommandChannels;
 
-    public GuildIndependentCommandHandler(JDA jda,
-                                          boolean concurrent,
-                                          CommandResponses responses,
-                                          Set<LoadedCommand> commands,
-                                          List<Object> params, Map<Class<? extends CommandResult>,
-                                          TriConsumer<CommandResult, LoadedCommand, Message>> results,
-                                          String prefix, long commandLifespan, long responseLifespan, boolean help, int entriesPerPage, boolean helpPermissions, boolean sendResultsAsReplies, boolean tagUserInReplies, Map<Long, List<Long>> allowedCommandChannels) {
-        super(jda, concurrent, responses, commands, params, results, help, entriesPerPage, helpPermissions);
+    /**
+     * Create a new handler.
+     *
+     * The allowed command channels are copied, so changing the map afterwards does not affect the handler. Earlier
+     * versions used the given map directly.
+     *
+     * @throws IllegalArgumentException if the map contains a null key or value
+     */
+    public GuildIndependentCommandHandler(CommandHandler.Builder base, String prefix, long commandLifespan, long responseLifespan, boolean sendResultsAsReplies, boolean tagUserInReplies, Map<Long, List<Long>> allowedCommandChannels) {
+        super(base);
         this.prefix = prefix;
         this.commandLifespan = commandLifespan;
         this.responseLifespan = responseLifespan;
         this.sendResultsAsReplies = sendResultsAsReplies;
         this.tagUserInReplies = tagUserInReplies;
-        this.allowedCommandChannels = allowedCommandChannels;
+        this.allowedCommandChannels = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, List<Long>> channels : allowedCommandChannels.entrySet()) {
+            if (channels.getKey() == null || channels.getValue() == null)
+                throw new IllegalArgumentException("The allowed command channels of guild " + channels.getKey() + " cannot be null!");
+            this.allowedCommandChannels.put(channels.getKey(), channels.getValue());
+        }
+    }
+
+    /**
+     * @deprecated use {@link CommandHandler.Builder#guildIndependent()}
+     */
+    @Deprecated
+    public GuildIndependentCommandHandler(JDA jda, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, String prefix, long commandLifespan, long responseLifespan, boolean help, int entriesPerPage, boolean helpPermissions, boolean sendResultsAsReplies, boolean tagUserInReplies, Map<Long, List<Long>> allowedCommandChannels) {
+        this(ShardGroup.of(jda), concurrent, responses, commands, params, results, prefix, commandLifespan, responseLifespan, help, entriesPerPage, helpPermissions, sendResultsAsReplies, tagUserInReplies, allowedCommandChannels);
+    }
+
+    /**
+     * @deprecated use {@link CommandHandler.Builder#guildIndependent()}
+     */
+    @Deprecated
+    public GuildIndependentCommandHandler(ShardGroup shards, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, String prefix, long commandLifespan, long responseLifespan, boolean help, int entriesPerPage, boolean helpPermissions, boolean sendResultsAsReplies, boolean tagUserInReplies, Map<Long, List<Long>> allowedCommandChannels) {
+        this(legacyBuilder(shards, concurrent, responses, params, results, help, entriesPerPage, helpPermissions), prefix, commandLifespan, responseLifespan, sendResultsAsReplies, tagUserInReplies, allowedCommandChannels);
+        adopt(commands);
     }
 
     public void addAllowedChannel(Guild guild, Long... ids) {
@@ -45,11 +71,16 @@ public class GuildIndependentCommandHandler extends CommandHandler {
 
     @Override
     public List<Long> getAllowedCommandChannels(Guild guild) {
-        return this.allowedCommandChannels.getOrDefault(guild.getIdLong(), new ArrayList<>());
+        if (allowedCommandChannels.isEmpty())
+            return Collections.emptyList();
+        return this.allowedCommandChannels.getOrDefault(guild.getIdLong(), Collections.emptyList());
     }
 
-    public void setPrefix(String prefix) {
+    public synchronized void setPrefix(String prefix) {
+        String old = this.prefix;
         this.prefix = prefix;
+        if (!old.equals(prefix))
+            prefixChanged(old, prefix);
     }
 
     @Override
@@ -57,6 +88,11 @@ public class GuildIndependentCommandHandler extends CommandHandler {
         return prefix;
     }
 
+    @Override
+    protected Collection<String> getKnownPrefixes() {
+        return Collections.singleton(prefix);
+    }
+
     @Override
     protected long getCommandLifespan(Guild guild) {
         return commandLifespan;
@@ -78,31 +114,34 @@ public class GuildIndependentCommandHandler extends CommandHandler {
     }
 
     public static class Builder {
-        private final JDA jda;
-        private final boolean concurrent;
-        private final CommandResponses responses;
-        private final Set<LoadedCommand> commands;
-        private final List<Object> params;
-        private final Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results;
-        private final boolean help;
-        private final boolean helpPermissions;
+        private final CommandHandler.Builder base;
         private boolean sendResultsAsReplies = true;
         private boolean tagUserInReply = false;
-        private final int entriesPerPage;
         private String prefix = "!";
         private long commandLifespan = 10, responseLifespan = 20;
         private Map<Long, List<Long>> allowedCommandChannels = new HashMap<>();
 
+        private Set<LoadedCommand> commands = Collections.emptySet();
+
+        public Builder(CommandHandler.Builder base) {
+            this.base = base;
+        }
+
+        /**
+         * @deprecated use {@link CommandHandler.Builder#guildIndependent()}
+         */
+        @Deprecated
         public Builder(JDA jda, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
-            this.jda = jda;
-            this.concurrent = concurrent;
-            this.responses = responses;
+            this(ShardGroup.of(jda), concurrent, responses, commands, params, results, help, entriesPerPage, helpPermissions);
+        }
+
+        /**
+         * @deprecated use {@link CommandHandler.Builder#guildIndependent()}
+         */
+        @Deprecated
+        public Builder(ShardGroup shards, boolean concurrent, CommandResponses responses, Set<LoadedCommand> commands, List<Object> params, Map<Class<? extends CommandResult>, TriConsumer<CommandResult, LoadedCommand, Message>> results, boolean help, int entriesPerPage, boolean helpPermissions) {
+            this(legacyBuilder(shards, concurrent, responses, params, results, help, entriesPerPage, helpPermissions));
             this.commands = commands;
-            this.params = params;
-            this.results = results;
-            this.help = help;
-            this.entriesPerPage = entriesPerPage;
-            this.helpPermissions = helpPermissions;
         }
 
         /**
@@ -171,7 +210,9 @@ public class GuildIndependentCommandHandler extends CommandHandler {
         }
 
         public GuildIndependentCommandHandler build() {
-            return new GuildIndependentCommandHandler(jda, concurrent, responses, commands, params, results, prefix, commandLifespan, responseLifespan, help, entriesPerPage, helpPermissions, sendResultsAsReplies, tagUserInReply, allowedCommandChannels);
+            GuildIndependentCommandHandler handler = new GuildIndependentCommandHandler(base, prefix, commandLifespan, responseLifespan, sendResultsAsReplies, tagUserInReply, allowedCommandChannels);
+            handler.adopt(commands);
+            return handler;
         }
     }
 }
@@ -63,14 +63,26 @@ public class HelpCommand {
 
     @Execute
     public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Supplier<Set<LoadedCommand>> commandFetcher) {
-        Set<LoadedCommand> commands = commandFetcher.get();
+        PaginationEmbed.Builder builder = new PaginationEmbed.Builder(member.getJDA());
+        generatePages(member, commandFetcher.get()).forEach(page -> builder.addPage(page));
+        builder.buildAndDisplay(channel);
+        return CommandResult.success();
+    }
+
+    /**
+     * Generate the help pages for a member.
+     *
+     * @param member the member the help is for
+     * @param commands all commands
+     * @return the pages
+     */
+    List<Page> generatePages(Member member, Set<LoadedCommand> commands) {
         int page = 1;
         int count = 1;
-        int size = (int) commandFetcher.get().stream().filter(cmd -> !usePermissions || member.hasPermission(cmd.getPermission())).count();
+        int size = (int) commands.stream().filter(cmd -> !usePermissions || member.hasPermission(cmd.getPermission())).count();
         int maxPages = size % numEntries == 0 ? size / numEntries : size / numEntries + 1;
 
         List<Page> content = new ArrayList<>();
-        PaginationEmbed.Builder builder = new PaginationEmbed.Builder(member.getJDA());
         while (count <= maxPages) {
             content.add(generatePage(page,numEntries, maxPages, commands.stream()
                     .filter(cmd -> !usePermissions || member.hasPermission(cmd.getPermission())).skip((count - 1) * numEntries).limit(numEntries), member));
@@ -78,9 +90,7 @@ public class HelpCommand {
                 page++;
             count++;
         }
-        content.forEach(page1 -> builder.addPage(page1));
-        builder.buildAndDisplay(channel);
-        return CommandResult.success();
+        return content;
     }
 
     private Page generatePage(int page, int limit, int maxPages, Stream<LoadedCommand> commands, Member sender) {
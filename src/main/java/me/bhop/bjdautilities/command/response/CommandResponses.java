@@ -93,4 +93,37 @@ public interface CommandResponses {
      * @return the compiled response
      */
     Message unknownError(Message message);
+
+    /**
+     * Sent when a command runs longer than its timeout and is abandoned.
+     *
+     * @param message the sender's original message, null for slash commands
+     * @param timeout the timeout which was exceeded in milliseconds
+     * @return the compiled response
+     */
+    default Message timedOut(Message message, long timeout) {
+        return unknownError(message);
+    }
+
+    /**
+     * Sent when a command is already running as often as it may, and no more invocations can wait for it.
+     *
+     * @param message the sender's original message, null for slash commands
+     * @return the compiled response
+     */
+    default Message busy(Message message) {
+        return unknownError(message);
+    }
+
+    /**
+     * Sent when a command is disabled by its {@link me.bhop.bjdautilities.command.CircuitBreaker}.
+     *
+     * This is compiled once per handler and the same response is sent for every rejected invocation, so it should
+     * not depend on the message.
+     *
+     * @return the compiled response
+     */
+    default Message unavailable() {
+        return unknownError(null);
+    }
 }
@@ -65,6 +65,21 @@ public class DefaultCommandResponses implements CommandResponses {
         return new MessageBuilder().setEmbeds(new EmbedBuilder(error).setDescription("An unknown error has been encountered. Please try again later!").build()).build();
     }
 
+    @Override
+    public Message timedOut(Message message, long timeout) {
+        return new MessageBuilder().setEmbeds(new EmbedBuilder(error).setDescription("The command took too long to respond and was cancelled. Please try again later!").build()).build();
+    }
+
+    @Override
+    public Message busy(Message message) {
+        return new MessageBuilder().setEmbeds(new EmbedBuilder(error).setDescription("That command is busy right now. Please try again in a moment!").build()).build();
+    }
+
+    @Override
+    public Message unavailable() {
+        return new MessageBuilder().setEmbeds(new EmbedBuilder(error).setDescription("That command is temporarily unavailable. Please try again later!").build()).build();
+    }
+
     @Override
     public Message unknownCommand(Message message, String prefix) {
         return new MessageBuilder().setEmbeds(new EmbedBuilder(error).setDescription("That is an invalid command! Try " + prefix + "help for a list of commands!").build()).build();
@@ -25,6 +25,8 @@
 
 package me.bhop.bjdautilities.command.result;
 
+import net.dv8tion.jda.api.entities.Message;
+
 /**
  * A result for a {@link me.bhop.bjdautilities.command.annotation.Command} execution.
  */
@@ -36,7 +38,7 @@ public interface CommandResult {
      * @return the default success result
      */
     static CommandResult success() {
-        return new Success();
+        return Success.INSTANCE;
     }
 
     /**
@@ -45,7 +47,7 @@ public interface CommandResult {
      * @return the default no permission result
      */
     static CommandResult noPermission() {
-        return new NoPermission();
+        return NoPermission.INSTANCE;
     }
 
     /**
@@ -54,21 +56,59 @@ public interface CommandResult {
      * @return the default invalid arguments result
      */
     static CommandResult invalidArguments() {
-        return new InvalidArguments();
+        return InvalidArguments.INSTANCE;
+    }
+
+    /**
+     * A result for a successful execution which responds with a message. The message is sent the same way as the
+     * handler's own responses.
+     *
+     * @param message the response
+     * @return the reply result
+     */
+    static CommandResult reply(Message message) {
+        return new Reply(message);
     }
 
     /**
      * The default command success result.
      */
-    class Success implements CommandResult { }
+    class Success implements CommandResult {
+        // Results carry no state, so the default ones are shared.
+        static final Success INSTANCE = new Success();
+    }
 
     /**
      * The default no permission result.
      */
-    class NoPermission implements CommandResult { }
+    class NoPermission implements CommandResult {
+        static final NoPermission INSTANCE = new NoPermission();
+    }
 
     /**
      * The default invalid arguments result.
      */
-    class InvalidArguments implements CommandResult { }
+    class InvalidArguments implements CommandResult {
+        static final InvalidArguments INSTANCE = new InvalidArguments();
+    }
+
+    /**
+     * The default reply result.
+     */
+    class Reply extends Success {
+        private final Message message;
+
+        public Reply(Message message) {
+            this.message = message;
+        }
+
+        /**
+         * Get the message to respond with.
+         *
+         * @return the response
+         */
+        public Message getMessage() {
+            return message;
+        }
+    }
 }
@@ -32,7 +32,8 @@ public class MethodInvocationException extends RuntimeException {
     }
 
     private MethodInvocationException(String message) {
-        super(message);
+        // The message already says what went wrong, the stack trace would only point into the command handler.
+        super(message, null, false, false);
     }
     // Blah Blah Blah message message message
     // Found     | Member, Channel, Message, String, List, Thing
@@ -26,6 +26,10 @@
 package me.bhop.bjdautilities.menu;
 
 import me.bhop.bjdautilities.EditableMessage;
+import me.bhop.bjdautilities.metrics.LibraryMetrics;
+import me.bhop.bjdautilities.metrics.LibraryMetrics.Route;
+import me.bhop.bjdautilities.metrics.jfr.FlightEvents;
+import me.bhop.bjdautilities.util.ErrorReporter;
 import me.bhop.bjdautilities.util.TriConsumer;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.MessageBuilder;
@@ -52,7 +56,7 @@ import java.util.function.Consumer;
  */
 public abstract class ReactionMenu extends ListenerAdapter {
     private final JDA jda;
-    private EditableMessage message = null;
+    private volatile EditableMessage message = null;
     private final MessageBuilder unsentMessage;
     private final List<String> startingReactions;
     private final List<TriConsumer<Message, ReactionMenu, User>> responseActions;
@@ -120,6 +124,7 @@ public abstract class ReactionMenu extends ListenerAdapter {
     ) {
         this.jda = jda;
         this.message = EditableMessage.wrap(message);
+        LibraryMetrics.menuDisplayed();
         this.unsentMessage = null;
         this.startingReactions = new ArrayList<>();
         this.responseActions = responseActions;
@@ -144,13 +149,15 @@ public abstract class ReactionMenu extends ListenerAdapter {
     public void display(MessageChannel channel) {
         if (message != null)
             throw new IllegalStateException("This menu has already been displayed!");
-        message = EditableMessage.wrap(channel.sendMessage(unsentMessage.build()).complete());
+        message = EditableMessage.wrap(LibraryMetrics.complete(Route.SEND_MESSAGE, channel.sendMessage(unsentMessage.build())));
+        LibraryMetrics.menuDisplayed();
         addStartingReactions(message);
         openEvents.forEach(action -> {
             try {
                 action.accept(this);
             } catch (Exception e) {
-                e.printStackTrace();
+                LibraryMetrics.menuError();
+                ErrorReporter.report("menu", e);
             }
         });
     }
@@ -164,13 +171,15 @@ public abstract class ReactionMenu extends ListenerAdapter {
     public void display(Message original) {
         if (message != null)
             throw new IllegalStateException("This menu has already been displayed!");
-        message = EditableMessage.wrap(message.editMessage(unsentMessage.build()).complete());
+        message = EditableMessage.wrap(LibraryMetrics.complete(Route.EDIT_MESSAGE, message.editMessage(unsentMessage.build())));
+        LibraryMetrics.menuDisplayed();
         addStartingReactions(message);
         openEvents.forEach(action -> {
             try {
                 action.accept(this);
             } catch (Exception e) {
-                e.printStackTrace();
+                LibraryMetrics.menuError();
+                ErrorReporter.report("menu", e);
             }
         });
     }
@@ -178,9 +187,9 @@ public abstract class ReactionMenu extends ListenerAdapter {
     private void addStartingReactions(Message message) {
         for (String emoteId : startingReactions) {
             if (emoteId.charAt(0) > 128)
-                message.addReaction(emoteId).queue();
+                LibraryMetrics.queue(Route.ADD_REACTION, message.addReaction(emoteId), null);
             else
-                message.addReaction(message.getGuild().getEmotesByName(emoteId, true).get(0)).queue();
+                LibraryMetrics.queue(Route.ADD_REACTION, message.addReaction(message.getGuild().getEmotesByName(emoteId, true).get(0)), null);
 
         }
     }
@@ -206,10 +215,12 @@ public abstract class ReactionMenu extends ListenerAdapter {
                 try {
                     action.accept(this);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             });
-            message.delete().complete();
+            LibraryMetrics.complete(Route.DELETE_MESSAGE, message.delete());
+            LibraryMetrics.menuDestroyed();
             message = null;
         }, seconds, TimeUnit.SECONDS);
     }
@@ -223,9 +234,9 @@ public abstract class ReactionMenu extends ListenerAdapter {
      */
     public void addReaction(String emoteId) {
         if (emoteId.charAt(0) > 128)
-            message.addReaction(emoteId).queue();
+            LibraryMetrics.queue(Route.ADD_REACTION, message.addReaction(emoteId), null);
         else
-            message.addReaction(message.getGuild().getEmotesByName(emoteId, true).get(0)).queue();
+            LibraryMetrics.queue(Route.ADD_REACTION, message.addReaction(message.getGuild().getEmotesByName(emoteId, true).get(0)), null);
     }
 
     /**
@@ -236,14 +247,14 @@ public abstract class ReactionMenu extends ListenerAdapter {
     public void removeReaction(String name) {
         message.refreshMessage(jda);
         message.getReactions().stream().filter(reaction -> reaction.getReactionEmote().getName().equals(name)).forEach(reaction -> {
-            reaction.removeReaction().queue(); //todo may not work with custom emotes
+            LibraryMetrics.queue(Route.REMOVE_REACTION, reaction.removeReaction(), null); //todo may not work with custom emotes
         });
     }
 
     public void removeReaction(String name, User userId) {
         message.refreshMessage(jda);
         message.getReactions().stream().filter(reaction -> reaction.getReactionEmote().getName().equals(name)).forEach(reaction -> {
-            reaction.removeReaction(userId).queue(); //todo may not work with custom emotes
+            LibraryMetrics.queue(Route.REMOVE_REACTION, reaction.removeReaction(userId), null); //todo may not work with custom emotes
         });
     }
 
@@ -291,6 +302,8 @@ public abstract class ReactionMenu extends ListenerAdapter {
         public void onMessageReceived(MessageReceivedEvent event) {
             if (event.getAuthor().isBot() || !getMessage().isFromGuild() || getMessage() != null && !event.getChannel().equals(getMessage().getTextChannel()))
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
 
             if (!super.responseActions.isEmpty()) {
                 for (TriConsumer<Message, ReactionMenu, User> response : super.responseActions) {
@@ -299,11 +312,14 @@ public abstract class ReactionMenu extends ListenerAdapter {
                             if (event.getMessage() != null && getMessage() != null)
                                 response.accept(event.getMessage(), this, event.getAuthor());
                         } catch (Exception e) {
-                            e.printStackTrace();
+                            LibraryMetrics.menuError();
+                            ErrorReporter.report("menu", e);
                         }
                     }
                 }
             }
+
+            FlightEvents.commitMenu(flight, "response", event.getGuild().getIdLong(), null, event.getMessageIdLong());
         }
 
         @Override
@@ -311,14 +327,17 @@ public abstract class ReactionMenu extends ListenerAdapter {
         public void onMessageReactionAdd(MessageReactionAddEvent event) {
             if (super.message == null || !getMessage().isFromGuild() || super.message.getIdLong() != event.getMessageIdLong() || event.getUser().isBot())
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
             String id = event.getReactionEmote().isEmote() ? event.getReactionEmote().getEmote().getName() : event.getReactionEmote().getName();
-            User user = event.retrieveUser().complete();
+            User user = LibraryMetrics.complete(Route.RETRIEVE_USER, event.retrieveUser());
             Consumer<ReactionMenu> action = super.addActions.get(id);
             if (action != null) {
                 try {
                     action.accept(this);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
 
@@ -327,7 +346,8 @@ public abstract class ReactionMenu extends ListenerAdapter {
                 try {
                     action2.accept(this, user);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
 
@@ -336,31 +356,37 @@ public abstract class ReactionMenu extends ListenerAdapter {
                     try {
                         anyAction.accept(id, this, user);
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        LibraryMetrics.menuError();
+                        ErrorReporter.report("menu", e);
                     }
                 });
             }
 
             try {
                 if (super.removeReactions)
-                    event.getReaction().removeReaction(user).complete();
+                    LibraryMetrics.complete(Route.REMOVE_REACTION, event.getReaction().removeReaction(user));
             } catch (ErrorResponseException ignored) {
             }
+
+            FlightEvents.commitMenu(flight, "reaction_add", event.getGuild().getIdLong(), id, event.getMessageIdLong());
         }
 
         @Override
         @SuppressWarnings("Duplicates")
         public void onMessageReactionRemove(MessageReactionRemoveEvent event) {
-            if (super.message == null || !getMessage().isFromGuild() || super.message.getIdLong() != event.getMessageIdLong() || event.retrieveUser().complete().isBot())
+            if (super.message == null || !getMessage().isFromGuild() || super.message.getIdLong() != event.getMessageIdLong() || LibraryMetrics.complete(Route.RETRIEVE_USER, event.retrieveUser()).isBot())
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
             String id = event.getReactionEmote().isEmote() ? event.getReactionEmote().getEmote().getName() : event.getReactionEmote().getName();
-            User user = event.retrieveUser().complete();
+            User user = LibraryMetrics.complete(Route.RETRIEVE_USER, event.retrieveUser());
             Consumer<ReactionMenu> action = super.removeActions.get(id);
             if (action != null) {
                 try {
                     action.accept(this);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
             BiConsumer<ReactionMenu, User> action2 = super.removeActions2.get(id);
@@ -368,7 +394,8 @@ public abstract class ReactionMenu extends ListenerAdapter {
                 try {
                     action2.accept(this, user);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
             if (!super.removeActions.containsKey(id) && !super.removeActions2.containsKey(id)) {
@@ -376,10 +403,13 @@ public abstract class ReactionMenu extends ListenerAdapter {
                     try {
                         anyAction.accept(id, this, user);
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        LibraryMetrics.menuError();
+                        ErrorReporter.report("menu", e);
                     }
                 });
             }
+
+            FlightEvents.commitMenu(flight, "reaction_remove", event.getGuild().getIdLong(), id, event.getMessageIdLong());
         }
     }
 
@@ -397,14 +427,19 @@ public abstract class ReactionMenu extends ListenerAdapter {
         public void onMessageReceived(@NotNull MessageReceivedEvent event) {
             if (event.getMessage().equals(getMessage()) || !event.isFromType(ChannelType.PRIVATE) || getMessage() != null && !event.getChannel().equals(getMessage().getPrivateChannel()))
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
 
             super.responseActions.forEach(response -> {
                 try {
                     response.accept(event.getMessage(), this, event.getAuthor());
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             });
+
+            FlightEvents.commitMenu(flight, "response", 0, null, event.getMessageIdLong());
         }
 
         @Override
@@ -412,13 +447,16 @@ public abstract class ReactionMenu extends ListenerAdapter {
         public void onMessageReactionAdd(MessageReactionAddEvent event) {
             if (super.message == null || !event.isFromType(ChannelType.PRIVATE) || super.message.getIdLong() != event.getMessageIdLong() || event.getUser().isBot())
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
             String id = event.getReactionEmote().isEmote() ? event.getReactionEmote().getEmote().getName() : event.getReactionEmote().getName();
             Consumer<ReactionMenu> action = super.addActions.get(id);
             if (action != null) {
                 try {
                     action.accept(this);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
 
@@ -427,7 +465,8 @@ public abstract class ReactionMenu extends ListenerAdapter {
                 try {
                     action2.accept(this, event.getUser());
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
 
@@ -436,10 +475,13 @@ public abstract class ReactionMenu extends ListenerAdapter {
                     try {
                         anyAction.accept(id, this, event.getUser());
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        LibraryMetrics.menuError();
+                        ErrorReporter.report("menu", e);
                     }
                 });
             }
+
+            FlightEvents.commitMenu(flight, "reaction_add", 0, id, event.getMessageIdLong());
         }
 
         @Override
@@ -447,13 +489,16 @@ public abstract class ReactionMenu extends ListenerAdapter {
         public void onMessageReactionRemove(MessageReactionRemoveEvent event) {
             if (super.message == null || !event.isFromType(ChannelType.PRIVATE) || super.message.getIdLong() != event.getMessageIdLong() || event.getUser().isBot())
                 return;
+            LibraryMetrics.menuEvent();
+            Object flight = FlightEvents.beginMenu();
             String id = event.getReactionEmote().isEmote() ? event.getReactionEmote().getEmote().getName() : event.getReactionEmote().getName();
             Consumer<ReactionMenu> action = super.removeActions.get(id);
             if (action != null) {
                 try {
                     action.accept(this);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
             BiConsumer<ReactionMenu, User> action2 = super.removeActions2.get(id);
@@ -461,7 +506,8 @@ public abstract class ReactionMenu extends ListenerAdapter {
                 try {
                     action2.accept(this, event.getUser());
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    LibraryMetrics.menuError();
+                    ErrorReporter.report("menu", e);
                 }
             }
 
@@ -470,10 +516,13 @@ public abstract class ReactionMenu extends ListenerAdapter {
                     try {
                         anyAction.accept(id, this, event.getUser());
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        LibraryMetrics.menuError();
+                        ErrorReporter.report("menu", e);
                     }
                 });
             }
+
+            FlightEvents.commitMenu(flight, "reaction_remove", 0, id, event.getMessageIdLong());
         }
 
         @Override
@@ -0,0 +1,106 @@
+package me.bhop.bjdautilities.metrics;
+
+/**
+ * An immutable copy of a {@link LatencyHistogram}. All values are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long sum, long max) {
+        long count = 0;
+        for (long c : counts)
+            count += c;
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the sum of all recorded values.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return the maximum, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Get the mean of all recorded values.
+     *
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the value at a percentile. The result is the highest value of the bucket containing the percentile,
+     * capped at the largest recorded value.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(LatencyHistogram.highestValue(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Get the number of buckets.
+     *
+     * @return the bucket count
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * Get the number of values recorded in a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the count of the bucket
+     */
+    public long getCountAt(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Get the highest value which is counted in a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the inclusive upper bound of the bucket
+     */
+    public long getUpperBound(int bucket) {
+        return LatencyHistogram.highestValue(bucket);
+    }
+}
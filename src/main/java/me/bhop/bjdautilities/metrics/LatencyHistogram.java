@@ -0,0 +1,85 @@
+package me.bhop.bjdautilities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in nanoseconds.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into {@value #SUB_BUCKETS} equal buckets,
+ * so a recorded value is known to within 12.5%. Values below 2<sup>{@value #MAX_EXPONENT} + 1</sup> ns (about 9.8
+ * hours) are tracked, anything longer is counted in the last bucket. Recording is a handful of atomic adds and never
+ * allocates.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int MAX_EXPONENT = 44;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        sum.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+    }
+
+    /**
+     * Take a snapshot of this histogram. Values recorded while the snapshot is taken may or may not be included.
+     *
+     * @return the snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            copy[i] = counts.get(i);
+        return new HistogramSnapshot(copy, sum.sum(), max.get());
+    }
+
+    /**
+     * Copy the bucket counts into an array without allocating.
+     *
+     * @param into an array of at least {@link #BUCKETS} elements
+     * @return the sum of the copied counts
+     */
+    long copyCounts(long[] into) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += into[i] = counts.get(i);
+        return count;
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int index = (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        if (index == BUCKETS - 1)
+            return Long.MAX_VALUE;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (index % SUB_BUCKETS + 1) * width - 1;
+    }
+}
@@ -0,0 +1,220 @@
+package me.bhop.bjdautilities.metrics;
+
+import me.bhop.bjdautilities.metrics.jfr.FlightEvents;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Process wide metrics of the library which do not belong to a single command handler: outbound REST requests,
+ * reaction menus and the executors used by the library.
+ *
+ * The recording methods are called by the library itself, they are public so the metrics can be shared across
+ * packages and fed by custom components.
+ */
+public final class LibraryMetrics {
+
+    /**
+     * The kinds of outbound requests made by the library.
+     */
+    public enum Route {
+        SEND_MESSAGE("send_message"),
+        EDIT_MESSAGE("edit_message"),
+        DELETE_MESSAGE("delete_message"),
+        RETRIEVE_MESSAGE("retrieve_message"),
+        ADD_REACTION("add_reaction"),
+        REMOVE_REACTION("remove_reaction"),
+        RETRIEVE_USER("retrieve_user"),
+        RETRIEVE_MEMBER("retrieve_member");
+
+        private final String key;
+
+        Route(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Get the name of this route as used in exported metrics.
+         *
+         * @return the route name
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final RestMetrics[] rest = new RestMetrics[Route.values().length];
+    private static final Map<String, WeakReference<ThreadPoolExecutor>> executors = new ConcurrentHashMap<>();
+    private static final LongAdder menusDisplayed = new LongAdder();
+    private static final LongAdder menusDestroyed = new LongAdder();
+    private static final LongAdder menuEvents = new LongAdder();
+    private static final LongAdder menuErrors = new LongAdder();
+
+    static {
+        for (Route route : Route.values())
+            rest[route.ordinal()] = new RestMetrics(route);
+    }
+
+    private LibraryMetrics() {
+    }
+
+    /**
+     * Get the request metrics of a route.
+     *
+     * @param route the route
+     * @return the route's metrics
+     */
+    public static RestMetrics rest(Route route) {
+        return rest[route.ordinal()];
+    }
+
+    /**
+     * Complete a request, recording its latency and outcome.
+     *
+     * @param route the route of the request
+     * @param action the request
+     * @param <T> the response type
+     * @return the response
+     */
+    public static <T> T complete(Route route, RestAction<T> action) {
+        Object flight = FlightEvents.beginRest();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = action.complete();
+            success = true;
+            return result;
+        } finally {
+            rest(route).record(System.nanoTime() - start, success);
+            FlightEvents.commitRest(flight, route.key, success, FlightEvents.getTrace());
+        }
+    }
+
+    /**
+     * Queue a request, recording its latency and outcome once it finishes. Failures are passed on to
+     * {@link RestAction#getDefaultFailure()}.
+     *
+     * @param route the route of the request
+     * @param action the request
+     * @param success the success callback, may be null
+     * @param <T> the response type
+     */
+    public static <T> void queue(Route route, RestAction<T> action, Consumer<? super T> success) {
+        queueAfter(route, action, 0, TimeUnit.SECONDS, success);
+    }
+
+    /**
+     * Queue a request after a delay, recording its latency and outcome once it finishes. The delay is not counted
+     * towards the latency.
+     *
+     * @param route the route of the request
+     * @param action the request
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @param success the success callback, may be null
+     * @param <T> the response type
+     */
+    public static <T> void queueAfter(Route route, RestAction<T> action, long delay, TimeUnit unit, Consumer<? super T> success) {
+        RestMetrics metrics = rest(route);
+        long trace = FlightEvents.getTrace();
+        // The flight event of a delayed request covers the delay, as JFR events cannot be started in the future.
+        Object flight = FlightEvents.beginRest();
+        long start = System.nanoTime() + unit.toNanos(delay);
+        Consumer<T> onSuccess = result -> {
+            metrics.record(System.nanoTime() - start, true);
+            FlightEvents.commitRest(flight, route.key, true, trace);
+            if (success != null)
+                success.accept(result);
+        };
+        Consumer<Throwable> onFailure = failure -> {
+            metrics.record(System.nanoTime() - start, false);
+            FlightEvents.commitRest(flight, route.key, false, trace);
+            RestAction.getDefaultFailure().accept(failure);
+        };
+        if (delay <= 0)
+            action.queue(onSuccess, onFailure);
+        else action.queueAfter(delay, unit, onSuccess, onFailure);
+    }
+
+    /**
+     * Register an executor to be exported. Executors are held weakly, so registering one does not keep it alive.
+     *
+     * @param name the name of the executor, replacing any executor registered with the same name
+     * @param executor the executor
+     */
+    public static void registerExecutor(String name, ThreadPoolExecutor executor) {
+        executors.put(name, new WeakReference<>(executor));
+    }
+
+    /**
+     * Get the registered executors which are still alive.
+     *
+     * @return the executors by name
+     */
+    public static Map<String, ThreadPoolExecutor> getExecutors() {
+        Map<String, ThreadPoolExecutor> alive = new LinkedHashMap<>();
+        executors.forEach((name, ref) -> {
+            ThreadPoolExecutor executor = ref.get();
+            if (executor == null)
+                executors.remove(name, ref);
+            else alive.put(name, executor);
+        });
+        return Collections.unmodifiableMap(alive);
+    }
+
+    static Map<String, WeakReference<ThreadPoolExecutor>> executorReferences() {
+        return executors;
+    }
+
+    // Reaction menus, recorded by ReactionMenu.
+    public static void menuDisplayed() {
+        menusDisplayed.increment();
+    }
+
+    public static void menuDestroyed() {
+        menusDestroyed.increment();
+    }
+
+    public static void menuEvent() {
+        menuEvents.increment();
+    }
+
+    public static void menuError() {
+        menuErrors.increment();
+    }
+
+    /**
+     * Get the number of reaction menus which have been displayed and not destroyed yet.
+     *
+     * @return the active menu count
+     */
+    public static long getActiveMenus() {
+        return menusDisplayed.sum() - menusDestroyed.sum();
+    }
+
+    /**
+     * Get the number of reactions and responses handled by reaction menus.
+     *
+     * @return the menu event count
+     */
+    public static long getMenuEvents() {
+        return menuEvents.sum();
+    }
+
+    /**
+     * Get the number of reaction menu listeners which threw an exception.
+     *
+     * @return the menu error count
+     */
+    public static long getMenuErrors() {
+        return menuErrors.sum();
+    }
+}
@@ -0,0 +1,389 @@
+package me.bhop.bjdautilities.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import me.bhop.bjdautilities.command.CommandHandler;
+import me.bhop.bjdautilities.command.CommandMetrics;
+import me.bhop.bjdautilities.command.LoadedCommand;
+import me.bhop.bjdautilities.command.ShardStatistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Serves the metrics of the library in the Prometheus text format from the JDK's built in HTTP server.
+ *
+ * This exposes the command metrics and shard counters of the added handlers, the registered executors and
+ * schedulers, reaction menus and outbound REST requests. Nothing here is loaded unless an exporter is built, so the
+ * {@code jdk.httpserver} module is only needed when it is used.
+ *
+ * Every scrape is rendered into the same buffer, so scraping does not produce garbage proportional to the number of
+ * commands.
+ */
+public class PrometheusExporter {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Histogram bucket bounds are powers of two, from about 1 microsecond to about 68 seconds.
+    private static final int FIRST_BOUND = 10;
+    private static final int LAST_BOUND = 36;
+    private static final LibraryMetrics.Route[] ROUTES = LibraryMetrics.Route.values();
+    private static final String[] COMMAND_COUNTERS = {
+            "bjda_command_permission_denials_total",
+            "bjda_command_invalid_arguments_total",
+            "bjda_command_exceptions_total",
+            "bjda_command_timeouts_total",
+            "bjda_command_rejections_total",
+            "bjda_command_short_circuits_total",
+            "bjda_command_cache_hits_total",
+            "bjda_command_accounted_executions_total",
+            "bjda_command_cpu_seconds_total",
+            "bjda_command_allocated_bytes_total"
+    };
+
+    private final HttpServer server;
+    private final Map<String, CommandHandler> handlers;
+    private final Buffer buffer = new Buffer();
+    private final long[] counts = new long[LatencyHistogram.BUCKETS];
+
+    private PrometheusExporter(InetSocketAddress address, String path, Map<String, CommandHandler> handlers) throws IOException {
+        this.handlers = handlers;
+        this.server = HttpServer.create(address, 0);
+        server.createContext(path, this::handle);
+        server.start();
+    }
+
+    /**
+     * Stop serving metrics.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Get the address the exporter is listening on.
+     *
+     * @return the address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Render the current metrics to a stream.
+     *
+     * @param out the stream
+     * @throws IOException if writing to the stream fails
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        render();
+        buffer.writeTo(out);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            synchronized (this) {
+                render();
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, buffer.size());
+                buffer.writeTo(exchange.getResponseBody());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void render() {
+        buffer.reset();
+        renderCommands();
+        renderShards();
+        renderExecutors();
+        renderMenus();
+        renderRest();
+    }
+
+    private void renderCommands() {
+        type("bjda_command_unknown_total", "counter");
+        for (Map.Entry<String, CommandHandler> handler : handlers.entrySet()) {
+            sample("bjda_command_unknown_total", "handler", handler.getKey());
+            buffer.number(handler.getValue().getUnknownCommands()).newLine();
+        }
+
+        type("bjda_command_queue_wait_seconds", "histogram");
+        for (Map.Entry<String, CommandHandler> handler : handlers.entrySet())
+            for (Map.Entry<String, LoadedCommand> cmd : handler.getValue().getCommandPaths().entrySet())
+                histogram("bjda_command_queue_wait_seconds", "handler", handler.getKey(), "command", cmd.getKey(), cmd.getValue().getMetrics().getQueueWait());
+
+        type("bjda_command_execution_seconds", "histogram");
+        for (Map.Entry<String, CommandHandler> handler : handlers.entrySet())
+            for (Map.Entry<String, LoadedCommand> cmd : handler.getValue().getCommandPaths().entrySet())
+                histogram("bjda_command_execution_seconds", "handler", handler.getKey(), "command", cmd.getKey(), cmd.getValue().getMetrics().getExecution());
+
+        for (int counter = 0; counter < COMMAND_COUNTERS.length; counter++) {
+            String name = COMMAND_COUNTERS[counter];
+            type(name, "counter");
+            for (Map.Entry<String, CommandHandler> handler : handlers.entrySet()) {
+                for (Map.Entry<String, LoadedCommand> cmd : handler.getValue().getCommandPaths().entrySet()) {
+                    CommandMetrics metrics = cmd.getValue().getMetrics();
+                    sample(name, "handler", handler.getKey(), "command", cmd.getKey());
+                    switch (counter) {
+                        case 0: buffer.number(metrics.getPermissionDenials()); break;
+                        case 1: buffer.number(metrics.getInvalidArguments()); break;
+                        case 2: buffer.number(metrics.getExceptions()); break;
+                        case 3: buffer.number(metrics.getTimeouts()); break;
+                        case 4: buffer.number(metrics.getRejections()); break;
+                        case 5: buffer.number(metrics.getShortCircuits()); break;
+                        case 6: buffer.number(metrics.getCacheHits()); break;
+                        case 7: buffer.number(metrics.getAccountedExecutions()); break;
+                        case 8: buffer.seconds(metrics.getCpuTime()); break;
+                        default: buffer.number(metrics.getAllocatedBytes()); break;
+                    }
+                    buffer.newLine();
+                }
+            }
+        }
+    }
+
+    private void renderShards() {
+        for (int counter = 0; counter < 2; counter++) {
+            String name = counter == 0 ? "bjda_messages_received_total" : "bjda_messages_dispatched_total";
+            type(name, "counter");
+            for (Map.Entry<String, CommandHandler> handler : handlers.entrySet()) {
+                ShardStatistics statistics = handler.getValue().getShardStatistics();
+                for (int shard = 0; shard < statistics.getShardCount(); shard++) {
+                    buffer.ascii(name).ascii("{handler=\"").label(handler.getKey()).ascii("\",shard=\"").number(shard).ascii("\"} ");
+                    buffer.number(counter == 0 ? statistics.getReceived(shard) : statistics.getDispatched(shard)).newLine();
+                }
+            }
+        }
+    }
+
+    private void renderExecutors() {
+        Map<String, WeakReference<ThreadPoolExecutor>> executors = LibraryMetrics.executorReferences();
+        for (int gauge = 0; gauge < 4; gauge++) {
+            String name = gauge == 0 ? "bjda_executor_threads" : gauge == 1 ? "bjda_executor_active_threads" : gauge == 2 ? "bjda_executor_queued_tasks" : "bjda_executor_completed_tasks_total";
+            type(name, gauge == 3 ? "counter" : "gauge");
+            for (Map.Entry<String, WeakReference<ThreadPoolExecutor>> entry : executors.entrySet()) {
+                ThreadPoolExecutor executor = entry.getValue().get();
+                if (executor == null)
+                    continue;
+                sample(name, "executor", entry.getKey());
+                buffer.number(gauge == 0 ? executor.getPoolSize() : gauge == 1 ? executor.getActiveCount() : gauge == 2 ? executor.getQueue().size() : executor.getCompletedTaskCount()).newLine();
+            }
+        }
+    }
+
+    private void renderMenus() {
+        type("bjda_menus_active", "gauge");
+        buffer.ascii("bjda_menus_active ").number(LibraryMetrics.getActiveMenus()).newLine();
+        type("bjda_menu_events_total", "counter");
+        buffer.ascii("bjda_menu_events_total ").number(LibraryMetrics.getMenuEvents()).newLine();
+        type("bjda_menu_errors_total", "counter");
+        buffer.ascii("bjda_menu_errors_total ").number(LibraryMetrics.getMenuErrors()).newLine();
+    }
+
+    private void renderRest() {
+        type("bjda_rest_request_seconds", "histogram");
+        for (LibraryMetrics.Route route : ROUTES)
+            histogram("bjda_rest_request_seconds", "route", route.getKey(), null, null, LibraryMetrics.rest(route).getLatency());
+        type("bjda_rest_failures_total", "counter");
+        for (LibraryMetrics.Route route : ROUTES) {
+            sample("bjda_rest_failures_total", "route", route.getKey());
+            buffer.number(LibraryMetrics.rest(route).getFailures()).newLine();
+        }
+    }
+
+    private void type(String name, String type) {
+        buffer.ascii("# TYPE ").ascii(name).ascii(" ").ascii(type).newLine();
+    }
+
+    private void sample(String name, String label, String value) {
+        buffer.ascii(name).ascii("{").ascii(label).ascii("=\"").label(value).ascii("\"} ");
+    }
+
+    private void sample(String name, String label, String value, String label2, String value2) {
+        buffer.ascii(name).ascii("{").ascii(label).ascii("=\"").label(value).ascii("\",").ascii(label2).ascii("=\"").label(value2).ascii("\"} ");
+    }
+
+    private void histogram(String name, String label, String value, String label2, String value2, LatencyHistogram histogram) {
+        long count = histogram.copyCounts(counts);
+        long cumulative = 0;
+        int index = 0;
+        for (int bound = FIRST_BOUND; bound <= LAST_BOUND; bound += 2) {
+            int last = LatencyHistogram.index((1L << bound) - 1);
+            while (index <= last)
+                cumulative += counts[index++];
+            labels(name, "_bucket", label, value, label2, value2).ascii(",le=\"").seconds(1L << bound).ascii("\"} ").number(cumulative).newLine();
+        }
+        labels(name, "_bucket", label, value, label2, value2).ascii(",le=\"+Inf\"} ").number(count).newLine();
+        labels(name, "_sum", label, value, label2, value2).ascii("} ").seconds(histogram.sum()).newLine();
+        labels(name, "_count", label, value, label2, value2).ascii("} ").number(count).newLine();
+    }
+
+    private Buffer labels(String name, String suffix, String label, String value, String label2, String value2) {
+        buffer.ascii(name).ascii(suffix).ascii("{").ascii(label).ascii("=\"").label(value).ascii("\"");
+        if (label2 != null)
+            buffer.ascii(",").ascii(label2).ascii("=\"").label(value2).ascii("\"");
+        return buffer;
+    }
+
+    /**
+     * A byte buffer which is reused between scrapes and writes text without creating intermediate strings.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        private final byte[] digits = new byte[20];
+
+        private Buffer() {
+            super(16384);
+        }
+
+        private Buffer ascii(String s) {
+            for (int i = 0; i < s.length(); i++)
+                write(s.charAt(i));
+            return this;
+        }
+
+        private Buffer newLine() {
+            write('\n');
+            return this;
+        }
+
+        private Buffer number(long value) {
+            if (value < 0) {
+                write('-');
+                value = -value;
+            }
+            int i = digits.length;
+            do {
+                digits[--i] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            write(digits, i, digits.length - i);
+            return this;
+        }
+
+        private Buffer seconds(long nanos) {
+            number(nanos / 1_000_000_000L);
+            write('.');
+            long fraction = nanos % 1_000_000_000L;
+            for (long unit = 100_000_000L; unit > 0; unit /= 10)
+                write((int) ('0' + fraction / unit % 10));
+            return this;
+        }
+
+        private Buffer label(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    write('\\');
+                    write(c);
+                } else if (c == '\n') {
+                    write('\\');
+                    write('n');
+                } else if (c < 0x80) {
+                    write(c);
+                } else if (c < 0x800) {
+                    write(0xC0 | c >> 6);
+                    write(0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    write(0xF0 | cp >> 18);
+                    write(0x80 | cp >> 12 & 0x3F);
+                    write(0x80 | cp >> 6 & 0x3F);
+                    write(0x80 | cp & 0x3F);
+                } else {
+                    write(0xE0 | c >> 12);
+                    write(0x80 | c >> 6 & 0x3F);
+                    write(0x80 | c & 0x3F);
+                }
+            }
+            return this;
+        }
+
+        // ByteArrayOutputStream synchronizes every write, the exporter already holds its own lock while rendering.
+        @Override
+        public void write(int b) {
+            if (count == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (count + len > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + len));
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * A convenient builder for creating {@link PrometheusExporter}s.
+     */
+    public static class Builder {
+        private final int port;
+        private String host = null;
+        private String path = "/metrics";
+        private final Map<String, CommandHandler> handlers = new LinkedHashMap<>();
+
+        /**
+         * Create a new builder instance.
+         *
+         * @param port the port to listen on
+         */
+        public Builder(int port) {
+            this.port = port;
+        }
+
+        /**
+         * Set the host to bind to. By default the exporter only listens on the loopback address, so it can only be
+         * scraped from the same machine. Set the address of an interface, or {@code 0.0.0.0} for all of them, to let
+         * a remote Prometheus server scrape it; the metrics are served without authentication.
+         *
+         * @param host the host name or address
+         */
+        public Builder setHost(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Set the path metrics are served on, {@code /metrics} by default.
+         *
+         * @param path the path
+         */
+        public Builder setPath(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * Add a command handler whose metrics should be exported.
+         *
+         * @param name the value of the {@code handler} label
+         * @param handler the handler
+         */
+        public Builder addHandler(String name, CommandHandler handler) {
+            handlers.put(name, handler);
+            return this;
+        }
+
+        /**
+         * Build and start the {@link PrometheusExporter}.
+         *
+         * @return the running exporter
+         * @throws IOException if the server could not be bound
+         */
+        public PrometheusExporter build() throws IOException {
+            InetSocketAddress address = host == null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : new InetSocketAddress(host, port);
+            return new PrometheusExporter(address, path, Collections.unmodifiableMap(new LinkedHashMap<>(handlers)));
+        }
+    }
+}
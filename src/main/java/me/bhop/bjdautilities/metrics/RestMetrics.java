@@ -0,0 +1,58 @@
+package me.bhop.bjdautilities.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of the requests made by the library on a single {@link LibraryMetrics.Route}.
+ *
+ * The latency of a request is the time from it being queued or completed until its response, so it includes any
+ * time spent waiting on a rate limit.
+ */
+public final class RestMetrics {
+    private final LibraryMetrics.Route route;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    RestMetrics(LibraryMetrics.Route route) {
+        this.route = route;
+    }
+
+    /**
+     * Record a finished request.
+     *
+     * @param nanos the latency of the request
+     * @param success whether the request succeeded
+     */
+    public void record(long nanos, boolean success) {
+        latency.record(nanos);
+        if (!success)
+            failures.increment();
+    }
+
+    /**
+     * Get the route these metrics are for.
+     *
+     * @return the route
+     */
+    public LibraryMetrics.Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Get the latency histogram of finished requests. Its count is the number of requests.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get the number of failed requests.
+     *
+     * @return the failure count
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+}
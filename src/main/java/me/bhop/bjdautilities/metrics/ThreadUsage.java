@@ -0,0 +1,64 @@
+package me.bhop.bjdautilities.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the CPU time and allocated bytes of the current thread through the JVM's {@link ThreadMXBean}.
+ *
+ * Both are enabled on first use if the JVM supports them. Allocated bytes need the HotSpot specific
+ * {@code com.sun.management.ThreadMXBean}, on other JVMs they are reported as unsupported.
+ */
+public final class ThreadUsage {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = enableCpuTime();
+    private static final com.sun.management.ThreadMXBean allocation = enableAllocation();
+
+    private ThreadUsage() {
+    }
+
+    private static boolean enableCpuTime() {
+        try {
+            if (!threads.isCurrentThreadCpuTimeSupported())
+                return false;
+            if (!threads.isThreadCpuTimeEnabled())
+                threads.setThreadCpuTimeEnabled(true);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean enableAllocation() {
+        try {
+            if (!(threads instanceof com.sun.management.ThreadMXBean))
+                return null;
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (!bean.isThreadAllocatedMemorySupported())
+                return null;
+            if (!bean.isThreadAllocatedMemoryEnabled())
+                bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the CPU time used by the current thread.
+     *
+     * @return the CPU time in nanoseconds, or -1 if it is not supported
+     */
+    public static long cpuTime() {
+        return CPU_TIME ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread.
+     *
+     * @return the allocated bytes, or -1 if it is not supported
+     */
+    public static long allocatedBytes() {
+        return allocation != null ? allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+}
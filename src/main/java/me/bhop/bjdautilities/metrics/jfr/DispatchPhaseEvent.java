@@ -0,0 +1,28 @@
+package me.bhop.bjdautilities.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A phase of dispatching a command: filtering, queueing, lookup, permission check, invocation or result handling.
+ */
+@Name("bjda.CommandDispatch")
+@Label("Command Dispatch Phase")
+@Category({"bJdaUtilities", "Commands"})
+@Description("A phase of dispatching a command")
+class DispatchPhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Guild Id")
+    long guildId;
+
+    @Label("Command")
+    String command;
+
+    @Label("Trace Id")
+    @Description("The id of the message or interaction which started the dispatch")
+    long traceId;
+}
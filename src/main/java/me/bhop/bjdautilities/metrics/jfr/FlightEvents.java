@@ -0,0 +1,213 @@
+package me.bhop.bjdautilities.metrics.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the library's Java Flight Recorder events.
+ *
+ * Every begin method returns null unless a recording has the event enabled, and every commit method ignores null,
+ * so callers pay a single field read while nothing is recording. On JVMs without {@code jdk.jfr} no event class is
+ * ever loaded.
+ *
+ * The trace id of the current thread links the events of one command invocation together. It is set by the command
+ * handlers to the id of the message or interaction being handled, and captured by requests queued from that thread.
+ */
+public final class FlightEvents {
+    private static final boolean AVAILABLE = isAvailable();
+    private static final ThreadLocal<long[]> trace = ThreadLocal.withInitial(() -> new long[1]);
+
+    private FlightEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Set the trace id of the current thread.
+     *
+     * @param traceId the trace id, 0 to clear it
+     */
+    public static void setTrace(long traceId) {
+        trace.get()[0] = traceId;
+    }
+
+    /**
+     * Get the trace id of the current thread.
+     *
+     * @return the trace id, or 0 if none is set
+     */
+    public static long getTrace() {
+        return trace.get()[0];
+    }
+
+    /**
+     * Begin a command dispatch phase.
+     *
+     * @return the event, or null if it is not being recorded
+     */
+    public static Object beginPhase() {
+        if (!AVAILABLE || !Types.isEnabled(Types.PHASE))
+            return null;
+        DispatchPhaseEvent event = new DispatchPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit a command dispatch phase.
+     *
+     * @param event the event returned by {@link #beginPhase()}
+     * @param phase the name of the phase
+     * @param guildId the guild id
+     * @param command the command label, may be null
+     * @param traceId the trace id
+     */
+    public static void commitPhase(Object event, String phase, long guildId, String command, long traceId) {
+        if (event == null)
+            return;
+        DispatchPhaseEvent e = (DispatchPhaseEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.phase = phase;
+            e.guildId = guildId;
+            e.command = command;
+            e.traceId = traceId;
+            e.commit();
+        }
+    }
+
+    /**
+     * Begin handling an event in a reaction menu.
+     *
+     * @return the event, or null if it is not being recorded
+     */
+    public static Object beginMenu() {
+        if (!AVAILABLE || !Types.isEnabled(Types.MENU))
+            return null;
+        MenuHandledEvent event = new MenuHandledEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit the handling of an event in a reaction menu.
+     *
+     * @param event the event returned by {@link #beginMenu()}
+     * @param action the kind of event handled
+     * @param guildId the guild id, or 0 in private channels
+     * @param emote the emote name, may be null
+     * @param traceId the id of the menu's message
+     */
+    public static void commitMenu(Object event, String action, long guildId, String emote, long traceId) {
+        if (event == null)
+            return;
+        MenuHandledEvent e = (MenuHandledEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.action = action;
+            e.guildId = guildId;
+            e.emote = emote;
+            e.traceId = traceId;
+            e.commit();
+        }
+    }
+
+    /**
+     * Begin an edit of an editable message.
+     *
+     * @return the event, or null if it is not being recorded
+     */
+    public static Object beginEdit() {
+        if (!AVAILABLE || !Types.isEnabled(Types.EDIT))
+            return null;
+        MessageEditEvent event = new MessageEditEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an edit of an editable message.
+     *
+     * @param event the event returned by {@link #beginEdit()}
+     * @param guildId the guild id, or 0 in private channels
+     * @param messageId the message id
+     * @param traceId the trace id
+     */
+    public static void commitEdit(Object event, long guildId, long messageId, long traceId) {
+        if (event == null)
+            return;
+        MessageEditEvent e = (MessageEditEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.guildId = guildId;
+            e.messageId = messageId;
+            e.traceId = traceId;
+            e.commit();
+        }
+    }
+
+    /**
+     * Begin an outbound request.
+     *
+     * @return the event, or null if it is not being recorded
+     */
+    public static Object beginRest() {
+        if (!AVAILABLE || !Types.isEnabled(Types.REST))
+            return null;
+        RestRequestEvent event = new RestRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an outbound request.
+     *
+     * @param event the event returned by {@link #beginRest()}
+     * @param route the route name
+     * @param success whether the request succeeded
+     * @param traceId the trace id
+     */
+    public static void commitRest(Object event, String route, boolean success, long traceId) {
+        if (event == null)
+            return;
+        RestRequestEvent e = (RestRequestEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.route = route;
+            e.success = success;
+            e.traceId = traceId;
+            e.commit();
+        }
+    }
+
+    /**
+     * The event types, only loaded once JFR is known to be available. A type is null if it could not be registered.
+     */
+    private static class Types {
+        private static final EventType PHASE = register(DispatchPhaseEvent.class);
+        private static final EventType MENU = register(MenuHandledEvent.class);
+        private static final EventType EDIT = register(MessageEditEvent.class);
+        private static final EventType REST = register(RestRequestEvent.class);
+
+        private static EventType register(Class<? extends Event> type) {
+            try {
+                FlightRecorder.register(type);
+                return EventType.getEventType(type);
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        private static boolean isEnabled(EventType type) {
+            return type != null && type.isEnabled();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package me.bhop.bjdautilities.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A reaction or response handled by a reaction menu, including its listeners.
+ */
+@Name("bjda.ReactionMenu")
+@Label("Reaction Menu Event")
+@Category({"bJdaUtilities", "Menus"})
+@Description("A reaction or response handled by a reaction menu")
+class MenuHandledEvent extends jdk.jfr.Event {
+    @Label("Action")
+    String action;
+
+    @Label("Guild Id")
+    long guildId;
+
+    @Label("Emote")
+    String emote;
+
+    @Label("Trace Id")
+    @Description("The id of the menu's message")
+    long traceId;
+}
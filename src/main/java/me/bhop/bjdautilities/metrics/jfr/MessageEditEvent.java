@@ -0,0 +1,25 @@
+package me.bhop.bjdautilities.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A successful edit of an editable message, from queueing the edit until its response.
+ */
+@Name("bjda.MessageEdit")
+@Label("Message Edit")
+@Category({"bJdaUtilities", "Messages"})
+@Description("An edit of an editable message")
+class MessageEditEvent extends jdk.jfr.Event {
+    @Label("Guild Id")
+    long guildId;
+
+    @Label("Message Id")
+    long messageId;
+
+    @Label("Trace Id")
+    @Description("The id of the message or interaction being handled when the edit was made")
+    long traceId;
+}
@@ -0,0 +1,25 @@
+package me.bhop.bjdautilities.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An outbound request made by the library, such as a message send or delete.
+ */
+@Name("bjda.RestRequest")
+@Label("REST Request")
+@Category({"bJdaUtilities", "REST"})
+@Description("An outbound request made by the library")
+class RestRequestEvent extends jdk.jfr.Event {
+    @Label("Route")
+    String route;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Trace Id")
+    @Description("The id of the message or interaction being handled when the request was made")
+    long traceId;
+}
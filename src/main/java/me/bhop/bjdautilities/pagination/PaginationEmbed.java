@@ -31,24 +31,30 @@ public class PaginationEmbed {
         reactionBuilder.setEmbed(pages.get(currentPage).getGeneratedPage());
         reactionBuilder.onClick(removeEmote, ReactionMenu::destroy);
         if (pages.size() > 1) {
-            //Prev
-            reactionBuilder.onClick(prevEmote, (prev, user) -> {
-                if (currentPage == 0)
-                    return;
-                currentPage--;
-                prev.getMessage().setContent(pages.get(currentPage).getGeneratedPage());
-            });
-            //Forward
-            reactionBuilder.onClick(forwardEmote, (forward, user) -> {
-                if (currentPage == pages.size())
-                    return;
-                currentPage++;
-                forward.getMessage().setContent(pages.get(currentPage).getGeneratedPage());
-            });
+            reactionBuilder.onClick(prevEmote, (prev, user) -> turn(prev, -1));
+            reactionBuilder.onClick(forwardEmote, (forward, user) -> turn(forward, 1));
         }
         reactionMenu = reactionBuilder.build();
     }
 
+    // Clicks may arrive on several threads at once, the page and the edit showing it must change together.
+    private synchronized void turn(ReactionMenu menu, int by) {
+        int page = currentPage + by;
+        if (page < 0 || page >= pages.size())
+            return;
+        currentPage = page;
+        menu.getMessage().setContent(pages.get(page).getGeneratedPage());
+    }
+
+    /**
+     * Get the index of the page which is currently shown.
+     *
+     * @return the current page, starting at 0
+     */
+    public synchronized int getCurrentPage() {
+        return currentPage;
+    }
+
     /**
      * Display this menu in a channel. It must not have been displayed yet.
      *
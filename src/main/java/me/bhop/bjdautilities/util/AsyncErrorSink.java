@@ -0,0 +1,57 @@
+package me.bhop.bjdautilities.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers errors to another sink from a single background thread, see {@link ErrorSink#async(ErrorSink, int)}.
+ */
+final class AsyncErrorSink implements ErrorSink {
+    private final ErrorSink sink;
+    private final BlockingQueue<Report> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    AsyncErrorSink(ErrorSink sink, int capacity) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Thread thread = new Thread(this::deliver, "bjda-error-sink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void report(String source, Throwable error, long suppressed) {
+        if (!queue.offer(new Report(source, error, suppressed)))
+            dropped.incrementAndGet();
+    }
+
+    private void deliver() {
+        for (;;) {
+            Report report;
+            try {
+                report = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                // Errors dropped while the queue was full count as suppressed by the next one delivered.
+                sink.report(report.source, report.error, report.suppressed + dropped.getAndSet(0));
+            } catch (Throwable ignored) {
+                // There is nowhere left to report a failing sink to.
+            }
+        }
+    }
+
+    private static final class Report {
+        private final String source;
+        private final Throwable error;
+        private final long suppressed;
+
+        private Report(String source, Throwable error, long suppressed) {
+            this.source = source;
+            this.error = error;
+            this.suppressed = suppressed;
+        }
+    }
+}
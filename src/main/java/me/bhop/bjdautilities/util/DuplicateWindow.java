@@ -0,0 +1,60 @@
+package me.bhop.bjdautilities.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock free filter which rejects a key seen again within a time window.
+ *
+ * Like {@link RecentIdSet}, each key maps to a single slot of a preallocated array, so a key may be forgotten early
+ * when another key lands in its slot. Each slot packs a 32 bit fingerprint of the key with the 32 bit time it was
+ * last accepted, so a slot is read and replaced with a single compare and set.
+ */
+public final class DuplicateWindow {
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final int window;
+    private final long epoch = System.nanoTime();
+
+    /**
+     * Create a new window.
+     *
+     * @param capacity the number of slots, rounded up to a power of two
+     * @param window the window length
+     * @param unit the unit of the window length
+     */
+    public DuplicateWindow(int capacity, long window, TimeUnit unit) {
+        long millis = unit.toMillis(window);
+        if (millis < 1 || millis > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The window must be between 1 and " + Integer.MAX_VALUE + "ms!");
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.window = (int) millis;
+    }
+
+    /**
+     * Accept a key unless it has already been accepted within the window.
+     *
+     * @param key the key, usually a hash of whatever identifies a duplicate
+     * @return true if the key is new or its window has passed, false if it is a duplicate
+     */
+    public boolean accept(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        // The fingerprint is forced odd so an empty slot never matches.
+        int fingerprint = (int) (mixed >>> 32) | 1;
+        int now = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - epoch);
+        long replacement = ((long) fingerprint << 32) | (now & 0xFFFFFFFFL);
+        while (true) {
+            long current = slots.get(slot);
+            if ((int) (current >>> 32) == fingerprint) {
+                int elapsed = now - (int) current;
+                if (elapsed >= 0 && elapsed < window)
+                    return false;
+            }
+            if (slots.compareAndSet(slot, current, replacement))
+                return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package me.bhop.bjdautilities.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports the errors caught by the library, such as exceptions thrown by commands or menu actions.
+ *
+ * Errors are grouped by a signature made of their source, type and the frame they were thrown from. Every
+ * signature may report a limited number of errors per minute, past that only a sample of them is passed on and
+ * the rest are counted as suppressed. The signatures are tracked in a fixed size table, so rare signatures may
+ * share a limit.
+ *
+ * By default errors are printed to {@link System#err} from a background thread, so a burst of errors does not
+ * hold up the threads reporting them.
+ */
+public final class ErrorReporter {
+    private static final int SLOTS = 1024;
+    private static final int MASK = SLOTS - 1;
+    private static final long MINUTE = 60_000;
+
+    // Per slot, the minute of the current window in the upper and the errors reported in it in the lower half.
+    private static final AtomicLongArray windows = new AtomicLongArray(SLOTS);
+    private static final AtomicLongArray suppressed = new AtomicLongArray(SLOTS);
+    private static final LongAdder totalSuppressed = new LongAdder();
+
+    private static volatile ErrorSink sink;
+    private static volatile int rateLimit = 10;
+    private static volatile int sampling = 100;
+
+    private ErrorReporter() {
+    }
+
+    /**
+     * Report an error.
+     *
+     * @param source where the error happened
+     * @param error the error
+     */
+    public static void report(String source, Throwable error) {
+        int slot = signature(source, error) & MASK;
+        int minute = (int) (System.currentTimeMillis() / MINUTE);
+        int count;
+        for (;;) {
+            long window = windows.get(slot);
+            boolean current = (int) (window >>> 32) == minute;
+            count = current ? (int) window + 1 : 1;
+            if (windows.compareAndSet(slot, window, ((long) minute << 32) | (count & 0xFFFFFFFFL)))
+                break;
+        }
+
+        int limit = rateLimit;
+        int sample = sampling;
+        if (count > limit && (sample == 0 || (count - limit) % sample != 0)) {
+            suppressed.incrementAndGet(slot);
+            totalSuppressed.increment();
+            return;
+        }
+        try {
+            getSink().report(source, error, suppressed.getAndSet(slot, 0));
+        } catch (Throwable ignored) {
+            // There is nowhere left to report a failing sink to.
+        }
+    }
+
+    private static int signature(String source, Throwable error) {
+        int hash = source.hashCode() * 31 + error.getClass().getName().hashCode();
+        StackTraceElement[] stack = error.getStackTrace();
+        if (stack.length > 0)
+            hash = hash * 31 + stack[0].hashCode();
+        // Spread the bits, the table only uses the lowest ones.
+        return hash ^ (hash >>> 16);
+    }
+
+    private static ErrorSink getSink() {
+        ErrorSink current = sink;
+        if (current == null) {
+            synchronized (ErrorReporter.class) {
+                if (sink == null)
+                    sink = ErrorSink.async(ErrorSink.stderr(), 1024);
+                current = sink;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Set the sink which errors are reported to.
+     *
+     * @param sink the sink
+     */
+    public static void setSink(ErrorSink sink) {
+        if (sink == null)
+            throw new IllegalArgumentException("The error sink cannot be null!");
+        ErrorReporter.sink = sink;
+    }
+
+    /**
+     * Set how many errors of a single signature are reported per minute before sampling starts.
+     *
+     * @param perMinute the number of errors reported per minute
+     */
+    public static void setRateLimit(int perMinute) {
+        if (perMinute < 0)
+            throw new IllegalArgumentException("The rate limit cannot be negative!");
+        rateLimit = perMinute;
+    }
+
+    /**
+     * Set how errors past the rate limit are sampled. One in every {@code oneIn} of them is still reported, 0 drops
+     * all of them.
+     *
+     * @param oneIn the sampling interval
+     */
+    public static void setSampling(int oneIn) {
+        if (oneIn < 0)
+            throw new IllegalArgumentException("The sampling interval cannot be negative!");
+        sampling = oneIn;
+    }
+
+    /**
+     * Get the total number of errors which were not reported because of the rate limit.
+     *
+     * @return the suppressed error count
+     */
+    public static long getSuppressed() {
+        return totalSuppressed.sum();
+    }
+}
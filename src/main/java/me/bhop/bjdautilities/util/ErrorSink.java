@@ -0,0 +1,54 @@
+package me.bhop.bjdautilities.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Receives the errors reported through the {@link ErrorReporter}.
+ */
+@FunctionalInterface
+public interface ErrorSink {
+
+    /**
+     * Handle an error.
+     *
+     * @param source where the error happened, e.g. {@code menu} or {@code command ping}
+     * @param error the error, without a stack trace if it is an expected failure
+     * @param suppressed the number of errors with the same signature which were dropped since the last report
+     */
+    void report(String source, Throwable error, long suppressed);
+
+    /**
+     * Get a sink which prints errors to {@link System#err}. Each error is written with a single call, so concurrent
+     * errors do not interleave.
+     *
+     * @return the sink
+     */
+    static ErrorSink stderr() {
+        return (source, error, suppressed) -> {
+            StringWriter out = new StringWriter();
+            PrintWriter writer = new PrintWriter(out);
+            writer.print("An error has occurred in " + source);
+            if (suppressed > 0)
+                writer.print(" (" + suppressed + " similar errors suppressed)");
+            writer.println(':');
+            if (error.getStackTrace().length == 0)
+                writer.println(error);
+            else error.printStackTrace(writer);
+            writer.flush();
+            System.err.print(out);
+        };
+    }
+
+    /**
+     * Get a sink which hands errors to another sink on a background thread, so the threads reporting errors never
+     * wait on its output. Errors are dropped while the queue is full.
+     *
+     * @param sink the sink to deliver to
+     * @param capacity the maximum number of queued errors
+     * @return the sink
+     */
+    static ErrorSink async(ErrorSink sink, int capacity) {
+        return new AsyncErrorSink(sink, capacity);
+    }
+}
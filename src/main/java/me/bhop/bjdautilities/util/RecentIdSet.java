@@ -0,0 +1,80 @@
+package me.bhop.bjdautilities.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock free set of recently seen snowflake ids.
+ *
+ * Each id maps to a single slot of a preallocated array, so adding an id may evict an older id which maps to the
+ * same slot. This makes the set lossy, but it never grows and never allocates after creation. Concurrent adds of
+ * the same id are exact: only one of them will report the id as new.
+ *
+ * The id {@code 0} cannot be stored, it is used to mark empty slots.
+ */
+public final class RecentIdSet {
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * Create a new set.
+     *
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    public RecentIdSet(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an id to the set.
+     *
+     * @param id the id
+     * @return true if the id was not present, false if it was already in the set
+     */
+    public boolean add(long id) {
+        int slot = slot(id);
+        while (true) {
+            long current = slots.get(slot);
+            if (current == id)
+                return false;
+            if (slots.compareAndSet(slot, current, id))
+                return true;
+        }
+    }
+
+    /**
+     * Check whether an id is in the set.
+     *
+     * @param id the id
+     * @return whether the id is present
+     */
+    public boolean contains(long id) {
+        return slots.get(slot(id)) == id;
+    }
+
+    /**
+     * Remove an id from the set.
+     *
+     * @param id the id
+     * @return true if the id was present and has been removed by this call
+     */
+    public boolean remove(long id) {
+        return id != 0 && slots.compareAndSet(slot(id), id, 0);
+    }
+
+    /**
+     * Get the number of slots in this set.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int slot(long id) {
+        // Snowflakes share their high bits, so mix them before picking a slot.
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,123 @@
+package me.bhop.bjdautilities.util;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.sharding.ShardManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of {@link JDA} shards which listeners can be registered to as one.
+ *
+ * This is either backed by a {@link ShardManager} or a fixed collection of {@link JDA} instances.
+ */
+public final class ShardGroup {
+
+    /**
+     * Create a group backed by a {@link ShardManager}. Listeners will also be registered to shards started later.
+     *
+     * @param manager the shard manager
+     * @return the group
+     */
+    public static ShardGroup of(ShardManager manager) {
+        return new ShardGroup(manager, null, manager.getShardsTotal());
+    }
+
+    /**
+     * Create a group from one or more {@link JDA} instances.
+     *
+     * @param instances the instances
+     * @return the group
+     */
+    public static ShardGroup of(JDA... instances) {
+        return of(Arrays.asList(instances));
+    }
+
+    /**
+     * Create a group from a collection of {@link JDA} instances.
+     *
+     * @param instances the instances
+     * @return the group
+     */
+    public static ShardGroup of(Collection<JDA> instances) {
+        if (instances.isEmpty())
+            throw new IllegalArgumentException("A shard group needs at least one JDA instance!");
+        int total = 1;
+        for (JDA jda : instances)
+            total = Math.max(total, jda.getShardInfo().getShardTotal());
+        return new ShardGroup(null, Collections.unmodifiableList(new ArrayList<>(instances)), total);
+    }
+
+    private final ShardManager manager;
+    private final List<JDA> instances;
+    private final int shardCount;
+
+    private ShardGroup(ShardManager manager, List<JDA> instances, int shardCount) {
+        this.manager = manager;
+        this.instances = instances;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Register listeners to every shard in this group.
+     *
+     * @param listeners the listeners
+     */
+    public void addEventListener(Object... listeners) {
+        if (manager != null)
+            manager.addEventListener(listeners);
+        else
+            for (JDA jda : instances)
+                jda.addEventListener(listeners);
+    }
+
+    /**
+     * Remove listeners from every shard in this group.
+     *
+     * @param listeners the listeners
+     */
+    public void removeEventListener(Object... listeners) {
+        if (manager != null)
+            manager.removeEventListener(listeners);
+        else
+            for (JDA jda : instances)
+                jda.removeEventListener(listeners);
+    }
+
+    /**
+     * Get the shards which are currently part of this group.
+     *
+     * @return the shards
+     */
+    public List<JDA> getShards() {
+        return manager != null ? manager.getShards() : instances;
+    }
+
+    /**
+     * Get the total number of shards in this group.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the index of a shard within this group, in the range [0, shard count). A shard outside of that range, e.g.
+     * one started with a larger shard total than the group was created with, is reported to the
+     * {@link ErrorReporter} instead of being counted as another shard.
+     *
+     * @param jda the shard
+     * @return the shard index, or -1 if the shard is outside of this group
+     */
+    public int getShardId(JDA jda) {
+        int id = jda.getShardInfo().getShardId();
+        if (id >= 0 && id < shardCount)
+            return id;
+        ErrorReporter.report("shard group", new IllegalStateException("Shard " + id + " is outside of this group of " + shardCount + " shards"));
+        return -1;
+    }
+}
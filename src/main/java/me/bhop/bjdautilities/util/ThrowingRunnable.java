@@ -12,7 +12,7 @@ public final class ThrowingRunnable implements Runnable {
         try {
             delegate.run();
         } catch (Exception e) {
-            e.printStackTrace();
+            ErrorReporter.report("task", e);
         }
     }
 }
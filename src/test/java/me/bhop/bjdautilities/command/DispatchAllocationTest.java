@@ -0,0 +1,141 @@
+package me.bhop.bjdautilities.command;
+
+import gnu.trove.set.hash.TLongHashSet;
+import me.bhop.bjdautilities.command.annotation.Command;
+import me.bhop.bjdautilities.command.annotation.Execute;
+import me.bhop.bjdautilities.command.handler.GuildIndependentCommandHandler;
+import me.bhop.bjdautilities.command.result.CommandResult;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.internal.JDAImpl;
+import net.dv8tion.jda.internal.entities.*;
+import net.dv8tion.jda.internal.utils.config.AuthorizationConfig;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that dispatching a message to a command which succeeds allocates nothing beyond the parsed message: the
+ * token array, the token strings, the label and the argument list handed to the command.
+ */
+public class DispatchAllocationTest {
+    private static final int WARMUP = 20000;
+    private static final int DISPATCHES = 10000;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static JDAImpl jda;
+    private static TextChannelImpl channel;
+    private static UserImpl author;
+    private static MemberImpl member;
+
+    @BeforeClass
+    public static void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        jda = new JDAImpl(new AuthorizationConfig("token"));
+        GuildImpl guild = new GuildImpl(jda, 100000000000000001L);
+        RoleImpl everyone = new RoleImpl(guild.getIdLong(), guild);
+        everyone.setRawPermissions(Permission.MESSAGE_SEND.getRawValue());
+        guild.setPublicRole(everyone);
+        channel = new TextChannelImpl(100000000000000002L, guild);
+        author = new UserImpl(100000000000000003L, jda);
+        member = new MemberImpl(guild, author);
+    }
+
+    @Test
+    public void commandWithoutArguments() {
+        assertBudget("!ping", 128);
+    }
+
+    @Test
+    public void commandWithArguments() {
+        assertBudget("!ping first second third", 384);
+    }
+
+    @Test
+    public void subCommand() {
+        assertBudget("!parent child", 256);
+    }
+
+    private void assertBudget(String content, long budget) {
+        Counter counter = new Counter();
+        GuildIndependentCommandHandler handler = new GuildIndependentCommandHandler.Builder(new CommandHandler.Builder(jda)
+                .setConcurrent(false)
+                .setDeleteCommands(false)
+                .setGenerateHelp(false)
+                .addCustomParameter(counter))
+                .setPrefix("!")
+                .build();
+        handler.register(Ping.class, Parent.class, Child.class);
+
+        // Every message needs its own id, otherwise the duplicate check drops it before the command is found.
+        MessageReceivedEvent[] events = new MessageReceivedEvent[WARMUP + DISPATCHES];
+        for (int i = 0; i < events.length; i++)
+            events[i] = event(200000000000000000L + i, content);
+
+        for (int i = 0; i < WARMUP; i++)
+            handler.onMessageReceived(events[i]);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = WARMUP; i < events.length; i++)
+            handler.onMessageReceived(events[i]);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(events.length, counter.executions);
+        long perDispatch = allocated / DISPATCHES;
+        assertTrue("Dispatching '" + content + "' allocated " + perDispatch + " bytes, the budget is " + budget, perDispatch <= budget);
+    }
+
+    private static MessageReceivedEvent event(long id, String content) {
+        ReceivedMessage message = new ReceivedMessage(id, channel, MessageType.DEFAULT, null, false, false, new TLongHashSet(), new TLongHashSet(),
+                false, false, content, null, author, member, null, null, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0, null);
+        return new MessageReceivedEvent(jda, 0, message);
+    }
+
+    public static class Counter {
+        private int executions;
+    }
+
+    @Command(label = "ping")
+    public static class Ping {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Counter counter) {
+            counter.executions++;
+            return CommandResult.success();
+        }
+    }
+
+    @Command(label = "parent", children = Child.class)
+    public static class Parent {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Counter counter) {
+            return CommandResult.invalidArguments();
+        }
+    }
+
+    @Command(label = "child")
+    public static class Child {
+        @Execute
+        public CommandResult onExecute(Member member, TextChannel channel, Message message, String label, List<String> args, Counter counter) {
+            counter.executions++;
+            return CommandResult.success();
+        }
+    }
+}